@@ -1 +1 @@
-[[Kerbel>>http://wiki.test:8765/xwiki/bin/view/Main/LuceneSearch?text=Wiesenkerbel+K%C3%BCchengew%C3%BCrz+Glanzkerbel+Kerbel||class="similarconcept" title="Suche nach den verwandten Begriffen: Wiesenkerbel, Küchengewürz, Glanzkerbel"]] (Anthriscus) ist eine Gattung von krautigen Pflanzen, die zur Familie der Doldenblütler (Apiaceae) gehört.
\ No newline at end of file
+[[Kerbel>>http://wiki.test:8765/xwiki/bin/view/Main/LuceneSearch?text=Kerbel+Wiesenkerbel+Glanzkerbel+K%C3%BCchengew%C3%BCrz||class="similarconcept" title="Suche nach den verwandten Begriffen: Wiesenkerbel, Glanzkerbel, Küchengewürz"]] (Anthriscus) ist eine Gattung von krautigen Pflanzen, die zur Familie der Doldenblütler (Apiaceae) gehört.
\ No newline at end of file
@@ -1 +1 @@
-Hans Jörg Küster: Kleine Kulturgeschichte der [[Gewürze>>http://wiki.test:8765/xwiki/bin/view/Main/LuceneSearch?text=mineralisches+Gew%C3%BCrz+pflanzliches+Gew%C3%BCrz+Gew%C3%BCrz+Gew%C3%BCrzmischung||class="similarconcept" title="Suche nach den verwandten Begriffen: mineralisches Gewürz, pflanzliches Gewürz, Gewürzmischung"]], C.H. Beck'sche Verlagsbuchhandlung, München 1997
\ No newline at end of file
+Hans Jörg Küster: Kleine Kulturgeschichte der [[Gewürze>>http://wiki.test:8765/xwiki/bin/view/Main/LuceneSearch?text=Gew%C3%BCrz+pflanzliches+Gew%C3%BCrz+mineralisches+Gew%C3%BCrz+Gew%C3%BCrzmischung||class="similarconcept" title="Suche nach den verwandten Begriffen: pflanzliches Gewürz, mineralisches Gewürz, Gewürzmischung"]], C.H. Beck'sche Verlagsbuchhandlung, München 1997
\ No newline at end of file
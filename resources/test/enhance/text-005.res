@@ -1 +1 @@
-Er wird vorwiegend als [[pflanzliches Gewürz>>doc:Gewürze.pflanzliches Gewürz]] verwendet. Bei [[pflanzlichen Gewürzen>>http://wiki.test:8765/xwiki/bin/view/Main/LuceneSearch?text=pflanzliches+Gew%C3%BCrz+Gew%C3%BCrz+K%C3%BCchengew%C3%BCrz+Wurzeln+und+Knollen||class="similarconcept" title="Suche nach den verwandten Begriffen: Gewürz, Küchengewürz, Wurzeln und Knollen"]] unterscheidet man auch [[Wurzeln und Knollen>>http://wiki.test:8765/xwiki/bin/view/Main/LuceneSearch?text=Knoblauch+Ingwer+Meerrettich+Zwiebel+Wurzeln+und+Knollen||class="similarconcept" title="Suche nach den verwandten Begriffen: Knoblauch, Ingwer, Meerrettich, Zwiebel"]].
\ No newline at end of file
+Er wird vorwiegend als [[pflanzliches Gewürz>>doc:Gewürze.pflanzliches Gewürz]] verwendet. Bei [[pflanzlichen Gewürzen>>http://wiki.test:8765/xwiki/bin/view/Main/LuceneSearch?text=pflanzliches+Gew%C3%BCrz+Wurzeln+und+Knollen+K%C3%BCchengew%C3%BCrz+Gew%C3%BCrz||class="similarconcept" title="Suche nach den verwandten Begriffen: Wurzeln und Knollen, Küchengewürz, Gewürz"]] unterscheidet man auch [[Wurzeln und Knollen>>http://wiki.test:8765/xwiki/bin/view/Main/LuceneSearch?text=Wurzeln+und+Knollen+Zwiebel+Meerrettich+Knoblauch+Ingwer||class="similarconcept" title="Suche nach den verwandten Begriffen: Zwiebel, Meerrettich, Knoblauch, Ingwer"]].
\ No newline at end of file
@@ -0,0 +1 @@
+Ein pflanzliches [[Beispiel>>Main.WebHome]] [[Gewürz>>http://wiki.test:8765/xwiki/bin/view/Main/LuceneSearch?text=Gew%C3%BCrz+pflanzliches+Gew%C3%BCrz+mineralisches+Gew%C3%BCrz+Gew%C3%BCrzmischung||class="similarconcept" title="Suche nach den verwandten Begriffen: pflanzliches Gewürz, mineralisches Gewürz, Gewürzmischung"]].
\ No newline at end of file
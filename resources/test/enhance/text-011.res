@@ -0,0 +1 @@
+Ein pflanzliches {{velocity}}#set($x = 1){{/velocity}} [[Gewürz>>http://wiki.test:8765/xwiki/bin/view/Main/LuceneSearch?text=Gew%C3%BCrz+pflanzliches+Gew%C3%BCrz+mineralisches+Gew%C3%BCrz+Gew%C3%BCrzmischung||class="similarconcept" title="Suche nach den verwandten Begriffen: pflanzliches Gewürz, mineralisches Gewürz, Gewürzmischung"]] und ein [[pflanzliches Gewürz>>http://wiki.test:8765/xwiki/bin/view/Main/LuceneSearch?text=pflanzliches+Gew%C3%BCrz+Wurzeln+und+Knollen+K%C3%BCchengew%C3%BCrz+Gew%C3%BCrz||class="similarconcept" title="Suche nach den verwandten Begriffen: Wurzeln und Knollen, Küchengewürz, Gewürz"]].
\ No newline at end of file
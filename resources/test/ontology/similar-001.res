@@ -1,2 +1,2 @@
-[http://www.ag-csw.de/ontologies/gewuerz#Petersilie, http://www.ag-csw.de/ontologies/gewuerz#Wurzelpetersilie, http://www.ag-csw.de/ontologies/gewuerz#Küchengewürz, http://www.ag-csw.de/ontologies/gewuerz#Blattpetersilie]
+[http://www.ag-csw.de/ontologies/gewuerz#Petersilie, http://www.ag-csw.de/ontologies/gewuerz#Wurzelpetersilie, http://www.ag-csw.de/ontologies/gewuerz#Blattpetersilie, http://www.ag-csw.de/ontologies/gewuerz#Küchengewürz]
 [http://www.ag-csw.de/ontologies/gewuerz#Ingwer, http://www.ag-csw.de/ontologies/gewuerz#Wurzeln_und_Knollen]
@@ -0,0 +1,311 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package de.csw.linkgenerator.plugin.lucene;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+
+/**
+ * Keeps one reference counted {@link IndexSearcher} over all configured index directories.
+ * Searches {@link #acquire() acquire} the current searcher and {@link #release(IndexSearcher)
+ * release} it when done. All searches of one reader generation share the same searcher, so its
+ * caches and statistics survive from one query to the next. {@link #maybeRefresh()} reopens
+ * changed indexes with {@link DirectoryReader#openIfChanged(DirectoryReader)}, warms the new
+ * composite reader and only then publishes a new searcher. A replaced reader is closed as soon as
+ * the last search still using it releases it.
+ * 
+ * @version $Id$
+ */
+public class IndexSearcherManager
+{
+    /** Logging helper object. */
+    private static final Log LOG = LogFactory.getLog(IndexSearcherManager.class);
+
+    /**
+     * Fields every query built by the plugin is restricted by; their term dictionaries are loaded
+     * while warming a new reader.
+     */
+    private static final String[] WARM_FIELDS =
+        {IndexFields.DOCUMENT_WIKI, IndexFields.DOCUMENT_LANGUAGE, IndexFields.DOCUMENT_TYPE};
+
+    /** Serializes refreshes; searches only synchronize on the manager itself. */
+    private final Object refreshLock = new Object();
+
+    /** The index directories, closed with the manager. */
+    private final Directory[] directories;
+
+    /** The published searcher; the manager holds one reference on its reader. */
+    private IndexSearcher current;
+
+    /** The per directory readers the reader of {@link #current} is composed of. */
+    private DirectoryReader[] readers;
+
+    /** Number of searchers published by {@link #maybeRefresh()}. */
+    private long generation;
+
+    /**
+     * Opens and warms a searcher over the given directories.
+     * 
+     * @param directories the index directories, each of which must contain an index
+     * @throws IOException if one of the indexes cannot be opened
+     */
+    public IndexSearcherManager(Directory[] directories) throws IOException
+    {
+        this.directories = directories;
+        DirectoryReader[] opened = new DirectoryReader[directories.length];
+        boolean success = false;
+        try {
+            for (int i = 0; i < directories.length; i++) {
+                opened[i] = DirectoryReader.open(directories[i]);
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                decRef(opened);
+            }
+        }
+        this.current = newSearcher(opened);
+        this.readers = opened;
+    }
+
+    /**
+     * Returns the current searcher. Every call must be paired with a call to
+     * {@link #release(IndexSearcher)}, preferably in a <tt>finally</tt> block.
+     * 
+     * @return the current searcher
+     * @throws AlreadyClosedException if the manager has been closed
+     */
+    public synchronized IndexSearcher acquire()
+    {
+        if (this.current == null) {
+            throw new AlreadyClosedException("this searcher manager is closed");
+        }
+        this.current.getIndexReader().incRef();
+
+        return this.current;
+    }
+
+    /**
+     * Releases a searcher obtained from {@link #acquire()}.
+     * 
+     * @param searcher the searcher to release, may be <tt>null</tt>
+     * @throws IOException if closing a no longer used reader fails
+     */
+    public void release(IndexSearcher searcher) throws IOException
+    {
+        if (searcher != null) {
+            searcher.getIndexReader().decRef();
+        }
+    }
+
+    /**
+     * Reopens the indexes that changed since the current searcher was opened. The new searcher
+     * shares the readers of unchanged indexes with the current one and is warmed before it is
+     * published.
+     * 
+     * @return <tt>true</tt> if a new searcher was published
+     * @throws IOException if reopening or warming an index fails; the current searcher stays
+     *             published in that case
+     */
+    public boolean maybeRefresh() throws IOException
+    {
+        synchronized (this.refreshLock) {
+            IndexSearcher old;
+            DirectoryReader[] subReaders;
+            synchronized (this) {
+                // holding the current searcher keeps its per directory readers open
+                old = acquire();
+                subReaders = this.readers;
+            }
+            try {
+                DirectoryReader[] refreshed = new DirectoryReader[subReaders.length];
+                boolean changed = false;
+                boolean success = false;
+                try {
+                    for (int i = 0; i < refreshed.length; i++) {
+                        refreshed[i] = DirectoryReader.openIfChanged(subReaders[i]);
+                        if (refreshed[i] != null) {
+                            changed = true;
+                        } else {
+                            subReaders[i].incRef();
+                            refreshed[i] = subReaders[i];
+                        }
+                    }
+                    success = true;
+                } finally {
+                    if (!success || !changed) {
+                        decRef(refreshed);
+                    }
+                }
+                if (changed) {
+                    publish(newSearcher(refreshed), refreshed);
+                }
+
+                return changed;
+            } finally {
+                release(old);
+            }
+        }
+    }
+
+    /**
+     * @return the generation of the current searcher; it grows with every searcher published by
+     *         {@link #maybeRefresh()}
+     */
+    public synchronized long getGeneration()
+    {
+        return this.generation;
+    }
+
+    /**
+     * Unpublishes the current searcher and closes the index directories. The readers are closed
+     * once the searches still using them have released them.
+     * 
+     * @throws IOException if closing a reader or directory fails
+     */
+    public void close() throws IOException
+    {
+        IndexSearcher old;
+        synchronized (this) {
+            old = this.current;
+            if (old == null) {
+                return;
+            }
+            this.current = null;
+            this.readers = null;
+        }
+        try {
+            release(old);
+        } finally {
+            for (int i = 0; i < this.directories.length; i++) {
+                this.directories[i].close();
+            }
+        }
+    }
+
+    /**
+     * Makes the given searcher the current one and drops the reference held on the previous one.
+     */
+    private void publish(IndexSearcher searcher, DirectoryReader[] subReaders) throws IOException
+    {
+        IndexSearcher old;
+        synchronized (this) {
+            old = this.current;
+            if (old == null) {
+                // closed while refreshing
+                release(searcher);
+                return;
+            }
+            this.current = searcher;
+            this.readers = subReaders;
+            this.generation++;
+        }
+        release(old);
+    }
+
+    /**
+     * Creates and warms a searcher over the given readers, taking over the reference the caller
+     * holds on each of them. A single reader is searched directly, several are combined in a
+     * {@link MultiReader} that closes them when it is closed itself.
+     */
+    private IndexSearcher newSearcher(DirectoryReader[] subReaders) throws IOException
+    {
+        IndexReader reader;
+        if (subReaders.length == 1) {
+            reader = subReaders[0];
+        } else {
+            // the MultiReader takes its own reference on each sub reader
+            reader = new MultiReader(subReaders, false);
+            decRef(subReaders);
+        }
+        IndexSearcher searcher = new IndexSearcher(reader);
+        boolean success = false;
+        try {
+            warm(searcher);
+            success = true;
+        } finally {
+            if (!success) {
+                reader.decRef();
+            }
+        }
+
+        return searcher;
+    }
+
+    /**
+     * Loads the parts of a new index that the first searches would otherwise load: the term
+     * dictionaries of {@link #WARM_FIELDS} and the stored fields of the first document.
+     */
+    private void warm(IndexSearcher searcher) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        IndexReader reader = searcher.getIndexReader();
+        for (int i = 0; i < WARM_FIELDS.length; i++) {
+            Terms terms = MultiFields.getTerms(reader, WARM_FIELDS[i]);
+            if (terms != null) {
+                TermsEnum termsEnum = terms.iterator(null);
+                while (termsEnum.next() != null) {
+                    termsEnum.docFreq();
+                }
+            }
+        }
+        TopDocs docs = searcher.search(new MatchAllDocsQuery(), 1);
+        if (docs.scoreDocs.length > 0) {
+            searcher.doc(docs.scoreDocs[0].doc);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("warmed reader with " + reader.numDocs() + " docs in "
+                + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /**
+     * Drops one reference on each non-<tt>null</tt> reader.
+     */
+    private static void decRef(IndexReader[] readers) throws IOException
+    {
+        IOException error = null;
+        for (int i = 0; i < readers.length; i++) {
+            if (readers[i] != null) {
+                try {
+                    readers[i].decRef();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
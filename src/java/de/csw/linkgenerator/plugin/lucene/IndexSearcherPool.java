@@ -0,0 +1,322 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package de.csw.linkgenerator.plugin.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+
+/**
+ * Shares {@link IndexSearcherManager}s between searches on the same set of index directories, for
+ * searches on indexes that are not configured in <tt>xwiki.cfg</tt>. A pooled manager is
+ * refreshed at most once per {@link #REFRESH_INTERVAL} and closed once it has not been used for
+ * the configured idle time. Managers are opened under a lock per directory set, so slow indexes
+ * don't hold up searches on other indexes. A refresh runs outside that lock in a single search,
+ * while concurrent searches on the same directories keep using the current searcher.
+ * 
+ * @version $Id$
+ */
+public class IndexSearcherPool
+{
+    /** Logging helper object. */
+    private static final Log LOG = LogFactory.getLog(IndexSearcherPool.class);
+
+    /** Minimum time in milliseconds between two refreshes of a pooled manager. */
+    private static final long REFRESH_INTERVAL = 1000;
+
+    /** The plugin opening the index directories. */
+    private final LucenePlugin plugin;
+
+    /** Time in milliseconds after which an unused manager is closed, 0 to keep it until closed. */
+    private final long idleTimeout;
+
+    /** Normalized index directory list => pooled manager; guarded by <code>this</code>. */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /** Closes idle managers, <tt>null</tt> if they are kept until the pool is closed. */
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * @param plugin the plugin opening the index directories
+     * @param idleTimeout time in seconds after which an unused manager is closed, 0 to keep
+     *            managers until the pool is closed
+     */
+    public IndexSearcherPool(LucenePlugin plugin, int idleTimeout)
+    {
+        this.plugin = plugin;
+        this.idleTimeout = idleTimeout * 1000L;
+        if (idleTimeout > 0) {
+            this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "Lucene searcher pool eviction");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            long period = Math.max(1, idleTimeout / 2);
+            this.evictor.scheduleWithFixedDelay(new Runnable()
+            {
+                public void run()
+                {
+                    evictIdle();
+                }
+            }, period, period, TimeUnit.SECONDS);
+        } else {
+            this.evictor = null;
+        }
+    }
+
+    /**
+     * Returns a searcher over the given index directories, opening them if they are not pooled
+     * yet. Every call must be paired with a call to {@link #release(IndexSearcher)}. If a pooled
+     * manager cannot be refreshed, its current searcher is returned.
+     * 
+     * @param indexDirs Comma separated list of Lucene index directories.
+     * @return a searcher over all given directories
+     * @throws IOException if the indexes cannot be opened
+     */
+    public IndexSearcher acquire(String indexDirs) throws IOException
+    {
+        String key = normalize(indexDirs);
+        while (true) {
+            Entry entry;
+            synchronized (this) {
+                entry = this.entries.get(key);
+                if (entry == null) {
+                    entry = new Entry();
+                    this.entries.put(key, entry);
+                }
+                entry.lastUsed = System.currentTimeMillis();
+            }
+
+            IndexSearcherManager manager;
+            try {
+                manager = entry.open(key);
+            } catch (IOException e) {
+                remove(key, entry);
+                throw e;
+            } catch (RuntimeException e) {
+                remove(key, entry);
+                throw e;
+            }
+            if (manager != null) {
+                try {
+                    return manager.acquire();
+                } catch (AlreadyClosedException e) {
+                    // evicted in the meantime
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases a searcher obtained from {@link #acquire(String)}. The searcher's readers are
+     * closed if its manager has been evicted in the meantime and no other search uses them.
+     * 
+     * @param searcher the searcher to release, may be <tt>null</tt>
+     * @throws IOException if closing a no longer used reader fails
+     */
+    public void release(IndexSearcher searcher) throws IOException
+    {
+        if (searcher != null) {
+            searcher.getIndexReader().decRef();
+        }
+    }
+
+    /**
+     * @return the number of pooled index directory sets
+     */
+    public synchronized int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Closes all pooled managers and stops the eviction.
+     */
+    public void close()
+    {
+        if (this.evictor != null) {
+            this.evictor.shutdownNow();
+        }
+        List<Entry> closed;
+        synchronized (this) {
+            closed = new ArrayList<Entry>(this.entries.values());
+            this.entries.clear();
+        }
+        for (int i = 0; i < closed.size(); i++) {
+            closed.get(i).close();
+        }
+    }
+
+    /**
+     * Closes the managers that have not been used for {@link #idleTimeout} milliseconds.
+     */
+    void evictIdle()
+    {
+        long now = System.currentTimeMillis();
+        List<Entry> idle = new ArrayList<Entry>();
+        synchronized (this) {
+            for (Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator(); it
+                .hasNext();) {
+                Map.Entry<String, Entry> entry = it.next();
+                if (now - entry.getValue().lastUsed >= this.idleTimeout) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("evicting idle searcher for index dirs " + entry.getKey());
+                    }
+                    idle.add(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+        for (int i = 0; i < idle.size(); i++) {
+            idle.get(i).close();
+        }
+    }
+
+    /**
+     * Drops an entry whose directories could not be opened, so the next search tries again.
+     */
+    private synchronized void remove(String key, Entry entry)
+    {
+        if (this.entries.get(key) == entry) {
+            this.entries.remove(key);
+        }
+    }
+
+    /**
+     * Trims and sorts the directories, so the same set of indexes always maps to the same key.
+     */
+    private static String normalize(String indexDirs)
+    {
+        TreeSet<String> dirs = new TreeSet<String>();
+        String[] dirPaths = StringUtils.split(indexDirs, ",");
+        for (int i = 0; i < dirPaths.length; i++) {
+            String dir = dirPaths[i].trim();
+            if (dir.length() > 0) {
+                dirs.add(dir);
+            }
+        }
+
+        return StringUtils.join(dirs, ",");
+    }
+
+    /**
+     * A pooled manager with its usage times. The manager is opened by the first search on the
+     * directories; the entry is pooled before, so the pool lock is not held while opening.
+     */
+    private final class Entry
+    {
+        /** <tt>null</tt> until opened; guarded by the entry. */
+        private IndexSearcherManager manager;
+
+        /** Set once the entry has been evicted; guarded by the entry. */
+        private boolean closed;
+
+        /** Guarded by the entry. */
+        private long lastRefresh;
+
+        /** Guarded by the pool. */
+        long lastUsed;
+
+        /**
+         * Opens the manager on first use, otherwise refreshes it at most once per
+         * {@link #REFRESH_INTERVAL}. The refresh, including warming the new searcher, runs
+         * outside the entry lock; the refresh time is claimed under the lock, so concurrent
+         * searches return the current manager right away instead of refreshing as well.
+         * 
+         * @param key the normalized index directories
+         * @return the manager, <tt>null</tt> if the entry has been closed
+         * @throws IOException if the indexes cannot be opened
+         */
+        IndexSearcherManager open(String key) throws IOException
+        {
+            IndexSearcherManager refresh;
+            synchronized (this) {
+                if (this.closed) {
+                    return null;
+                }
+                long now = System.currentTimeMillis();
+                if (this.manager == null) {
+                    Directory[] dirs = IndexSearcherPool.this.plugin.openDirectories(key);
+                    boolean success = false;
+                    try {
+                        this.manager = new IndexSearcherManager(dirs);
+                        success = true;
+                    } finally {
+                        if (!success) {
+                            LucenePlugin.closeDirectories(dirs);
+                        }
+                    }
+                    this.lastRefresh = now;
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("pooled searcher for index dirs " + key);
+                    }
+                    return this.manager;
+                }
+                if (now - this.lastRefresh < REFRESH_INTERVAL) {
+                    return this.manager;
+                }
+                this.lastRefresh = now;
+                refresh = this.manager;
+            }
+
+            try {
+                refresh.maybeRefresh();
+            } catch (IOException e) {
+                LOG.warn("cannot refresh searcher for index dirs " + key
+                    + ", searching the previous version", e);
+            } catch (AlreadyClosedException e) {
+                // evicted while refreshing, the caller retries with a new entry
+            }
+
+            return refresh;
+        }
+
+        synchronized void close()
+        {
+            this.closed = true;
+            if (this.manager != null) {
+                try {
+                    this.manager.close();
+                } catch (IOException e) {
+                    LOG.warn("cannot close pooled searcher", e);
+                }
+            }
+        }
+    }
+}
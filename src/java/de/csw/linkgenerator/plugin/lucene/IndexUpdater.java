@@ -49,7 +49,6 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.util.Version;
 
 import com.xpn.xwiki.XWiki;
@@ -461,7 +460,7 @@ public class IndexUpdater extends AbstractXWikiRunnable
 
         if (dirPaths != null && dirPaths.length > 0) {
         	try {
-        		this.indexDir = new NIOFSDirectory(new File(dirPaths[0]));
+        		this.indexDir = plugin.openDirectory(new File(dirPaths[0]));
         	} catch (IOException e) {
         		IOException up = new IOException("Cannot create index in " + dirPaths[0], e);
         		throw up; // he he
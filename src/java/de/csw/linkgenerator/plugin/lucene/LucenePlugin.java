@@ -31,11 +31,10 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.QueryParser;
@@ -52,7 +51,13 @@ import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopDocsCollector;
 import org.apache.lucene.search.TopFieldCollector;
 import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.SimpleFSDirectory;
 import org.apache.lucene.util.Version;
 
 import com.xpn.xwiki.XWikiContext;
@@ -91,6 +96,20 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
 
     public static final String PROP_MAX_QUEUE_SIZE = "de.csw.linkgenerator.plugin.lucene.maxQueueSize";
 
+    /**
+     * The Lucene directory implementation used for the indexes: <tt>mmap</tt> (the default),
+     * <tt>nio</tt>, <tt>simple</tt> or <tt>auto</tt> to let Lucene choose for the platform.
+     */
+    public static final String PROP_DIRECTORY = "de.csw.linkgenerator.plugin.lucene.directory";
+
+    /**
+     * If <tt>true</tt>, the term dictionaries and norms of the configured indexes are read once at
+     * startup, so the first searches find them in the page cache.
+     */
+    public static final String PROP_PRELOAD = "de.csw.linkgenerator.plugin.lucene.preload";
+
+    private static final String DEFAULT_DIRECTORY = "mmap";
+
     private static final String DEFAULT_ANALYZER =
         "org.apache.lucene.analysis.standard.StandardAnalyzer";
     
@@ -116,10 +135,21 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
     protected Properties config;
 
     /**
-     * List of Lucene indexes used for searching. By default there is only one such index for all
-     * the wiki. One searches is created for each entry in {@link #indexDirs}.
+     * Manages the Lucene indexes used for searching. By default there is only one such index for
+     * all the wiki. One searcher is managed for each entry in {@link #indexDirs}. Stays
+     * <tt>null</tt> until the indexes could be opened, see {@link #openSearchers()}.
+     */
+    private volatile IndexSearcherManager searcherManager;
+
+    /**
+     * Searchers for the indexes searched with <tt>getSearchResultsFromIndexes</tt>, keyed by
+     * their directories. <tt>null</tt> while the plugin is (re)initialized.
      */
-    private IndexSearcher[] searchers;
+    private volatile IndexSearcherPool searcherPool;
+
+    /** Results of recent searches on {@link #searcherManager}. */
+    private final SearchResultCache resultCache =
+        new SearchResultCache(Config.getIntAppProperty(Config.LUCENE_RESULTCACHE_SIZE));
 
     /**
      * Comma separated list of directories holding Lucene index data. The first such directory is
@@ -130,6 +160,12 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
      */
     private String indexDirs;
 
+    /**
+     * The Lucene directory implementation, configured in <tt>xwiki.cfg</tt> using the key
+     * {@link #PROP_DIRECTORY}.
+     */
+    private String directoryType;
+
     private IndexRebuilder indexRebuilder;
 
     public DocChangeRule docChangeRule = null;
@@ -163,9 +199,8 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
 
     /**
      * Allows to search special named lucene indexes without having to configure them in
-     * <tt>xwiki.cfg</tt>. Slower than
-     * {@link #getSearchResults(String, String, String, String, XWikiContext)} since new index
-     * searcher instances are created for every query.
+     * <tt>xwiki.cfg</tt>. The searchers for each set of directories are pooled and shared with
+     * other searches on the same directories.
      * 
      * @param query The base query, using the query engine supported by Lucene.
      * @param myIndexDirs Comma separated list of directories containing the lucene indexes to
@@ -179,18 +214,13 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
     public SearchResults getSearchResultsFromIndexes(String query, String myIndexDirs,
         String languages, XWikiContext context) throws Exception
     {
-        IndexSearcher[] mySearchers = createSearchers(myIndexDirs);
-        SearchResults retval =
-            search(query, (String) null, (String) null, languages, mySearchers, context);
-//        closeSearchers(mySearchers);
-
-        return retval;
+        return searchIndexes(query, (Sort) null, myIndexDirs, languages, context);
     }
 
     /**
      * Allows to search special named lucene indexes without having to configure them in xwiki.cfg.
-     * Slower than {@link #getSearchResults}since new index searcher instances are created for
-     * every query.
+     * The searchers for each set of directories are pooled and shared with other searches on the
+     * same directories.
      * 
      * @param query The base query, using the query engine supported by Lucene.
      * @param sortFields A list of fields to sort results by. For each field, if the name starts
@@ -207,18 +237,13 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
     public SearchResults getSearchResultsFromIndexes(String query, String[] sortFields,
         String myIndexDirs, String languages, XWikiContext context) throws Exception
     {
-        IndexSearcher[] mySearchers = createSearchers(myIndexDirs);
-        SearchResults retval = search(query, sortFields, null, languages, mySearchers, context);
-//        closeSearchers(mySearchers);
-
-        return retval;
+        return searchIndexes(query, getSort(sortFields), myIndexDirs, languages, context);
     }
 
     /**
      * Allows to search special named lucene indexes without having to configure them in
-     * <tt>xwiki.cfg</tt>. Slower than
-     * {@link #getSearchResults(String, String, String, String, XWikiContext)} since new index
-     * searcher instances are created for every query.
+     * <tt>xwiki.cfg</tt>. The searchers for each set of directories are pooled and shared with
+     * other searches on the same directories.
      * 
      * @param query The base query, using the query engine supported by Lucene.
      * @param sortField The name of a field to sort results by. If the name starts with '-', then
@@ -235,11 +260,7 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
     public SearchResults getSearchResultsFromIndexes(String query, String sortField,
         String myIndexDirs, String languages, XWikiContext context) throws Exception
     {
-        IndexSearcher[] mySearchers = createSearchers(myIndexDirs);
-        SearchResults retval = search(query, sortField, null, languages, mySearchers, context);
-//        closeSearchers(mySearchers);
-
-        return retval;
+        return searchIndexes(query, getSort(sortField), myIndexDirs, languages, context);
     }
 
     /**
@@ -261,9 +282,7 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
     public SearchResults getSearchResults(String query, String sortField,
         String virtualWikiNames, String languages, XWikiContext context) throws Exception
     {
-        // TODO Why is this here? This is slow, as it closes and opens indexes for each query.
-        // openSearchers();
-        return search(query, sortField, virtualWikiNames, languages, this.searchers, context);
+        return search(query, getSort(sortField), virtualWikiNames, languages, context);
     }
 
     /**
@@ -285,56 +304,33 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
     public SearchResults getSearchResults(String query, String[] sortField,
         String virtualWikiNames, String languages, XWikiContext context) throws Exception
     {
-        return search(query, sortField, virtualWikiNames, languages, this.searchers, context);
+        return search(query, getSort(sortField), virtualWikiNames, languages, context);
     }
 
     /**
-     * Creates and submits a query to the Lucene engine.
+     * Creates the sort for a field name.
      * 
-     * @param query The base query, using the query engine supported by Lucene.
      * @param sortField The name of a field to sort results by. If the name starts with '-', then
      *            the field (excluding the -) is used for reverse sorting. If <tt>null</tt> or
      *            empty, sort by hit score.
-     * @param virtualWikiNames Comma separated list of virtual wiki names to search in, may be
-     *            <tt>null</tt> to search all virtual wikis.
-     * @param languages Comma separated list of language codes to search in, may be <tt>null</tt>
-     *            or empty to search all languages.
-     * @param indexes List of Lucene indexes (searchers) to search.
-     * @param context The context of the request.
-     * @return The list of search results.
-     * @throws IOException If the Lucene searchers encounter a problem reading the indexes.
-     * @throws ParseException If the query is not valid.
+     * @return The sort, or <tt>null</tt> to sort by hit score.
      */
-    private SearchResults search(String query, String sortField, String virtualWikiNames,
-        String languages, IndexSearcher[] indexes, XWikiContext context) throws IOException,
-        org.apache.lucene.queryparser.classic.ParseException
+    private Sort getSort(String sortField)
     {
         SortField sort = getSortField(sortField);
-        // Perform the actual search
-        return search(query, (sort != null) ? new Sort(sort) : null, virtualWikiNames, languages,
-            indexes, context);
+
+        return (sort != null) ? new Sort(sort) : null;
     }
 
     /**
-     * Creates and submits a query to the Lucene engine.
+     * Creates the sort for a list of field names.
      * 
-     * @param query The base query, using the query engine supported by Lucene.
      * @param sortFields A list of fields to sort results by. For each field, if the name starts
      *            with '-', then that field (excluding the -) is used for reverse sorting. If
      *            <tt>null</tt> or empty, sort by hit score.
-     * @param virtualWikiNames Comma separated list of virtual wiki names to search in, may be
-     *            <tt>null</tt> to search all virtual wikis.
-     * @param languages Comma separated list of language codes to search in, may be <tt>null</tt>
-     *            or empty to search all languages.
-     * @param indexes List of Lucene indexes (searchers) to search.
-     * @param context The context of the request.
-     * @return The list of search results.
-     * @throws IOException If the Lucene searchers encounter a problem reading the indexes.
-     * @throws ParseException If the query is not valid.
+     * @return The sort, or <tt>null</tt> to sort by hit score.
      */
-    private SearchResults search(String query, String[] sortFields, String virtualWikiNames,
-        String languages, IndexSearcher[] indexes, XWikiContext context) throws IOException,
-        org.apache.lucene.queryparser.classic.ParseException
+    private Sort getSort(String[] sortFields)
     {
         // Turn the sorting field names into SortField objects.
         SortField[] sorts = null;
@@ -350,9 +346,95 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
                 sorts = (SortField[]) ArrayUtils.removeElement(sorts, null);
             }
         }
-        // Perform the actual search
-        return search(query, (sorts != null) ? new Sort(sorts) : null, virtualWikiNames,
-            languages, indexes, context);
+
+        return (sorts != null) ? new Sort(sorts) : null;
+    }
+
+    /**
+     * Searches indexes that are not configured in <tt>xwiki.cfg</tt>, using a searcher from
+     * {@link #searcherPool}.
+     * 
+     * @param query The base query, using the query engine supported by Lucene.
+     * @param sort A Lucene sort object, can contain one or more sort criterias. If <tt>null</tt>,
+     *            sort by hit score.
+     * @param myIndexDirs Comma separated list of directories containing the lucene indexes to
+     *            search.
+     * @param languages Comma separated list of language codes to search in, may be <tt>null</tt>
+     *            or empty to search all languages.
+     * @param context The context of the request.
+     * @return The list of search results, empty if the plugin is being reinitialized.
+     * @throws IOException If the Lucene searchers encounter a problem reading the indexes.
+     * @throws ParseException If the query is not valid.
+     */
+    private SearchResults searchIndexes(String query, Sort sort, String myIndexDirs,
+        String languages, XWikiContext context) throws IOException,
+        org.apache.lucene.queryparser.classic.ParseException
+    {
+        IndexSearcherPool searcherPool = this.searcherPool;
+        if (searcherPool == null) {
+            LOG.warn("indexes " + myIndexDirs + " are not open, returning no results");
+            return new SearchResults(new SearchResultCache.Hits(new TopDocs(0, new ScoreDoc[0],
+                Float.NaN), new Document[0]), new com.xpn.xwiki.api.XWiki(context.getWiki(),
+                context), context);
+        }
+
+        IndexSearcher searcher = searcherPool.acquire(myIndexDirs);
+        try {
+            return search(query, sort, null, languages, searcher, context);
+        } finally {
+            searcherPool.release(searcher);
+        }
+    }
+
+    /**
+     * Searches the indexes configured in <tt>xwiki.cfg</tt>. Results are served from
+     * {@link #resultCache} as long as the indexes did not change.
+     * 
+     * @param query The base query, using the query engine supported by Lucene.
+     * @param sort A Lucene sort object, can contain one or more sort criterias. If <tt>null</tt>,
+     *            sort by hit score.
+     * @param virtualWikiNames Comma separated list of virtual wiki names to search in, may be
+     *            <tt>null</tt> to search all virtual wikis.
+     * @param languages Comma separated list of language codes to search in, may be <tt>null</tt>
+     *            or empty to search all languages.
+     * @param context The context of the request.
+     * @return The list of search results, empty if the indexes could not be opened.
+     * @throws IOException If the Lucene searchers encounter a problem reading the indexes.
+     * @throws ParseException If the query is not valid.
+     */
+    private SearchResults search(String query, Sort sort, String virtualWikiNames,
+        String languages, XWikiContext context) throws IOException,
+        org.apache.lucene.queryparser.classic.ParseException
+    {
+        IndexSearcherManager searcherManager = this.searcherManager;
+        if (searcherManager == null) {
+            LOG.warn("indexes " + indexDirs + " are not open, returning no results");
+            return new SearchResults(new SearchResultCache.Hits(new TopDocs(0, new ScoreDoc[0],
+                Float.NaN), new Document[0]), new com.xpn.xwiki.api.XWiki(context.getWiki(),
+                context), context);
+        }
+
+        // Read the generation before acquiring the searcher, so an entry is never older than the
+        // generation it is filed under.
+        long generation = searcherManager.getGeneration();
+        SearchResultCache.Hits hits =
+            this.resultCache.get(query, sort, virtualWikiNames, languages, generation);
+        if (hits != null) {
+            return new SearchResults(hits, new com.xpn.xwiki.api.XWiki(context.getWiki(), context),
+                context);
+        }
+
+        SearchResults results;
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            results = search(query, sort, virtualWikiNames, languages, searcher, context);
+        } finally {
+            searcherManager.release(searcher);
+        }
+        this.resultCache.put(query, sort, virtualWikiNames, languages, generation,
+            results.getHits());
+
+        return results;
     }
 
     /**
@@ -365,24 +447,16 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
      *            <tt>null</tt> to search all virtual wikis.
      * @param languages Comma separated list of language codes to search in, may be <tt>null</tt>
      *            or empty to search all languages.
-     * @param indexes List of Lucene indexes (searchers) to search.
+     * @param searcher The searcher over the Lucene indexes to search.
      * @param context The context of the request.
      * @return The list of search results.
      * @throws IOException If the Lucene searchers encounter a problem reading the indexes.
      * @throws ParseException If the query is not valid.
      */
     private SearchResults search(String query, Sort sort, String virtualWikiNames,
-        String languages, IndexSearcher[] indexes, XWikiContext context) throws IOException,
+        String languages, IndexSearcher searcher, XWikiContext context) throws IOException,
         org.apache.lucene.queryparser.classic.ParseException
     {
-//        MultiSearcher searcher = new MultiSearcher(indexes);
-    	IndexReader[] readers = new IndexReader[indexes.length];
-    	for (int i = 0; i < readers.length; i++)
-		{
-			readers[i] = indexes[i].getIndexReader();
-		}
-    	
-        IndexSearcher searcher = new IndexSearcher(new MultiReader(readers));
         // Enhance the base query with wiki names and languages.
         Query q = buildQuery(query, virtualWikiNames, languages);
 
@@ -397,7 +471,7 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
         searcher.search(q, topDocs);
         
         // Transform the raw Lucene search results into XWiki-aware results
-        return new SearchResults(topDocs, searcher,
+        return new SearchResults(topDocs.topDocs(), searcher,
             new com.xpn.xwiki.api.XWiki(context.getWiki(), context),
             context);
     }
@@ -523,6 +597,7 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
             File workDir = context.getWiki().getWorkSubdirectory("lucene_linkgenerator", context);
             indexDirs = workDir.getAbsolutePath();
         }
+        this.directoryType = config.getProperty(PROP_DIRECTORY, DEFAULT_DIRECTORY).trim();
         indexUpdater = new IndexUpdater();
         indexUpdater.setAnalyzer(analyzer);
         try
@@ -540,6 +615,8 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
         xwikiActionRule = new XWikiActionRule(indexUpdater);
 
         openSearchers();
+        searcherPool =
+            new IndexSearcherPool(this, Config.getIntAppProperty(Config.LUCENE_SEARCHERPOOL_IDLE));
 
         context.getWiki().getNotificationManager().addGeneralRule(docChangeRule);
         context.getWiki().getNotificationManager().addGeneralRule(xwikiActionRule);
@@ -555,11 +632,19 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
 
         indexUpdaterThread.stop();
 
-//        try {
-//            closeSearchers(this.searchers);
-//        } catch (IOException e) {
-//            LOG.warn("cannot close searchers");
-//        }
+        if (searcherManager != null) {
+            try {
+                searcherManager.close();
+            } catch (IOException e) {
+                LOG.warn("cannot close searchers", e);
+            }
+            searcherManager = null;
+        }
+        if (searcherPool != null) {
+            searcherPool.close();
+            searcherPool = null;
+        }
+        resultCache.clear();
         indexUpdater = null;
         analyzer = null;
 
@@ -577,46 +662,149 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
     }
 
     /**
-     * Creates an array of Searchers for a number of lucene indexes.
+     * Opens the directories of a number of lucene indexes, creating an empty index where there
+     * is none yet. Directories that cannot be opened are logged and left out.
      * 
-     * @param indexDirs Comma separated list of Lucene index directories to create searchers for.
-     * @return Array of searchers
+     * @param indexDirs Comma separated list of Lucene index directories.
+     * @return Array of index directories
      */
-    public IndexSearcher[] createSearchers(String indexDirs) throws Exception
+    Directory[] openDirectories(String indexDirs)
     {
         String[] dirPaths = StringUtils.split(indexDirs, ",");
-        NIOFSDirectory[] dirs = new NIOFSDirectory[dirPaths.length];
-        for (int i = 0; i < dirPaths.length; i++)
-		{
-			dirs[i] = new NIOFSDirectory(new File(dirPaths[i]));
-		}
-        List<IndexSearcher> searchersList = new ArrayList<IndexSearcher>();
-        for (int i = 0; i < dirs.length; i++) {
+        List<Directory> dirs = new ArrayList<Directory>();
+        for (int i = 0; i < dirPaths.length; i++) {
             try {
-                if (!DirectoryReader.indexExists(dirs[i])) {
+                Directory dir = openDirectory(new File(dirPaths[i]));
+                if (!DirectoryReader.indexExists(dir)) {
                     // If there's no index there, create an empty one; otherwise the reader
                     // constructor will throw an exception and fail to initialize
-                	IndexWriterConfig conf = new IndexWriterConfig(Version.LUCENE_40, analyzer);
-                    new IndexWriter(dirs[i], conf).close();
+                    IndexWriterConfig conf = new IndexWriterConfig(Version.LUCENE_40, analyzer);
+                    new IndexWriter(dir, conf).close();
+                }
+                dirs.add(dir);
+            } catch (IOException e) {
+                LOG.error("cannot open index " + dirPaths[i], e);
+            }
+        }
+
+        return dirs.toArray(new Directory[dirs.size()]);
+    }
+
+    /**
+     * Closes index directories that are not used any more, e.g. because no searcher could be
+     * opened on them. Failures are logged.
+     * 
+     * @param dirs the directories to close
+     */
+    static void closeDirectories(Directory[] dirs)
+    {
+        for (int i = 0; i < dirs.length; i++) {
+            try {
+                dirs[i].close();
+            } catch (IOException e) {
+                LOG.warn("cannot close index " + dirs[i], e);
+            }
+        }
+    }
+
+    /**
+     * Opens an index directory with the implementation configured by {@link #PROP_DIRECTORY}.
+     * 
+     * @param path the file system directory of the index
+     * @return the Lucene directory
+     * @throws IOException if the directory cannot be opened
+     */
+    Directory openDirectory(File path) throws IOException
+    {
+        if ("nio".equalsIgnoreCase(directoryType)) {
+            return new NIOFSDirectory(path);
+        } else if ("simple".equalsIgnoreCase(directoryType)) {
+            return new SimpleFSDirectory(path);
+        } else if ("auto".equalsIgnoreCase(directoryType)) {
+            return FSDirectory.open(path);
+        } else if (!DEFAULT_DIRECTORY.equalsIgnoreCase(directoryType)) {
+            LOG.warn("unknown directory implementation " + directoryType + ", using "
+                + DEFAULT_DIRECTORY);
+        }
+
+        return new MMapDirectory(path);
+    }
+
+    /**
+     * Reads the term dictionaries and norms of the given indexes once, so the operating system
+     * keeps them in its page cache. Files inside compound segments are left to the warming done
+     * by {@link IndexSearcherManager}.
+     * 
+     * @param dirs the index directories to preload
+     */
+    private void preload(Directory[] dirs)
+    {
+        long start = System.currentTimeMillis();
+        long bytes = 0;
+        byte[] buffer = new byte[64 * 1024];
+        for (int i = 0; i < dirs.length; i++) {
+            try {
+                String[] files = dirs[i].listAll();
+                for (int j = 0; j < files.length; j++) {
+                    if (!isHotFile(files[j])) {
+                        continue;
+                    }
+                    IndexInput in = dirs[i].openInput(files[j], IOContext.READONCE);
+                    try {
+                        long remaining = in.length();
+                        while (remaining > 0) {
+                            int chunk = (int) Math.min(buffer.length, remaining);
+                            in.readBytes(buffer, 0, chunk);
+                            remaining -= chunk;
+                        }
+                        bytes += in.length();
+                    } finally {
+                        in.close();
+                    }
                 }
-                DirectoryReader reader = DirectoryReader.open(dirs[i]);
-                searchersList.add(new IndexSearcher(reader));
             } catch (IOException e) {
-                LOG.error("cannot open index " + dirs[i], e);
+                LOG.warn("cannot preload index " + dirs[i], e);
             }
         }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("preloaded " + bytes + " bytes of index files in "
+                + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
 
-        return searchersList.toArray(new IndexSearcher[searchersList.size()]);
+    /**
+     * @return whether the file holds a term dictionary, its index or norms
+     */
+    private static boolean isHotFile(String fileName)
+    {
+        return fileName.endsWith(".tim") || fileName.endsWith(".tip")
+            || fileName.indexOf("_nrm") != -1;
     }
 
     /**
-     * Opens the searchers for the configured index Dirs after closing any already existing ones.
+     * Opens the searchers for the configured index Dirs, or refreshes them if they are already
+     * open. Readers replaced by a refresh are closed once the last search using them is done.
      */
     protected synchronized void openSearchers()
     {
         try {
-//            closeSearchers(this.searchers);
-            this.searchers = createSearchers(indexDirs);
+            if (this.searcherManager == null) {
+                Directory[] dirs = openDirectories(indexDirs);
+                boolean success = false;
+                try {
+                    if ("true".equals(config.getProperty(PROP_PRELOAD, "false").trim())) {
+                        preload(dirs);
+                    }
+                    this.searcherManager = new IndexSearcherManager(dirs);
+                    success = true;
+                } finally {
+                    if (!success) {
+                        closeDirectories(dirs);
+                    }
+                }
+            } else if (this.searcherManager.maybeRefresh()) {
+                this.resultCache.clear();
+            }
         } catch (Exception e1) {
             LOG.error("error opening searchers for index dirs "
                 + config.getProperty(PROP_INDEX_DIR), e1);
@@ -640,6 +828,14 @@ public class LucenePlugin extends XWikiDefaultPlugin implements XWikiPluginInter
 //        }
     }
 
+    /**
+     * @return the cache of recent search results
+     */
+    public SearchResultCache getResultCache()
+    {
+        return resultCache;
+    }
+
     public String getIndexDirs()
     {
         return indexDirs;
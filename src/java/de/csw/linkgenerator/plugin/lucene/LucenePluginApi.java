@@ -202,6 +202,38 @@ public class LucenePluginApi extends PluginApi<LucenePlugin>
         return getProtectedPlugin().getLuceneDocCount();
     }
 
+    /**
+     * @return the number of searches served from the result cache.
+     */
+    public long getResultCacheHits()
+    {
+        return getProtectedPlugin().getResultCache().getHits();
+    }
+
+    /**
+     * @return the number of searches that had to query the index.
+     */
+    public long getResultCacheMisses()
+    {
+        return getProtectedPlugin().getResultCache().getMisses();
+    }
+
+    /**
+     * @return the ratio of searches served from the result cache.
+     */
+    public double getResultCacheHitRate()
+    {
+        return getProtectedPlugin().getResultCache().getHitRate();
+    }
+
+    /**
+     * @return the number of searches in the result cache.
+     */
+    public int getResultCacheSize()
+    {
+        return getProtectedPlugin().getResultCache().size();
+    }
+
     /**
      * Searches the named indexes using the given query for documents in the given languages
      * 
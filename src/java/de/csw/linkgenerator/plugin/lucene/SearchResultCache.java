@@ -0,0 +1,255 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package de.csw.linkgenerator.plugin.lucene;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+
+/**
+ * Size bounded LRU cache of raw search results. An entry is keyed by the normalized query string,
+ * the sort, the virtual wiki names and languages searched in and by the reader generation of the
+ * {@link IndexSearcherManager} that produced it, so searches never hit results of an outdated
+ * index. Entries of older generations are dropped with {@link #clear()} when a new generation is
+ * published.
+ * <p>
+ * Only the hits and their stored fields are cached; every lookup wraps them in a new
+ * {@link SearchResults}, which checks the view rights of the current user.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class SearchResultCache
+{
+    /** Logging helper object. */
+    private static final Log LOG = LogFactory.getLog(SearchResultCache.class);
+
+    /** Maximum number of entries, 0 disables the cache. */
+    private final int maxSize;
+
+    /** Key => hits, in access order; guarded by <code>this</code>. */
+    private final LinkedHashMap<Key, Hits> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize maximum number of queries to keep, 0 disables the cache
+     */
+    public SearchResultCache(final int maxSize)
+    {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Key, Hits>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Hits> eldest)
+            {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the cached hits or <tt>null</tt> if the query is not cached
+     */
+    public Hits get(String query, Sort sort, String virtualWikiNames, String languages,
+        long generation)
+    {
+        if (this.maxSize == 0) {
+            return null;
+        }
+        Hits result;
+        synchronized (this) {
+            result = this.entries.get(new Key(query, sort, virtualWikiNames, languages, generation));
+        }
+        if (result == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+
+        return result;
+    }
+
+    /**
+     * Stores the hits of a query.
+     * 
+     * @see #get(String, Sort, String, String, long)
+     */
+    public void put(String query, Sort sort, String virtualWikiNames, String languages,
+        long generation, Hits result)
+    {
+        if (this.maxSize == 0) {
+            return;
+        }
+        synchronized (this) {
+            this.entries.put(new Key(query, sort, virtualWikiNames, languages, generation), result);
+        }
+    }
+
+    /**
+     * Drops all entries, e.g., after a new reader generation has been published.
+     */
+    public synchronized void clear()
+    {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("clearing search result cache with " + this.entries.size() + " entries");
+        }
+        this.entries.clear();
+    }
+
+    /**
+     * @return number of cached queries
+     */
+    public synchronized int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * @return maximum number of cached queries
+     */
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    /**
+     * @return number of lookups that found an entry
+     */
+    public long getHits()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * @return number of lookups that did not find an entry
+     */
+    public long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * @return hits / lookups, 0 if there was no lookup yet
+     */
+    public double getHitRate()
+    {
+        long h = this.hits.get();
+        long total = h + this.misses.get();
+
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SearchResultCache[size=" + size() + "/" + this.maxSize + ", hits=" + this.hits.get()
+            + ", misses=" + this.misses.get() + "]";
+    }
+
+    /**
+     * The hits of a query together with their stored fields.
+     */
+    public static final class Hits
+    {
+        final TopDocs docs;
+
+        final Document[] documents;
+
+        Hits(TopDocs docs, Document[] documents)
+        {
+            this.docs = docs;
+            this.documents = documents;
+        }
+    }
+
+    /**
+     * Key of a cache entry.
+     */
+    private static final class Key
+    {
+        final String query;
+
+        final String sort;
+
+        final String virtualWikiNames;
+
+        final String languages;
+
+        final long generation;
+
+        final int hash;
+
+        Key(String query, Sort sort, String virtualWikiNames, String languages, long generation)
+        {
+            this.query = normalize(query);
+            this.sort = sort == null ? "" : sort.toString();
+            this.virtualWikiNames = normalize(virtualWikiNames);
+            this.languages = normalize(languages);
+            this.generation = generation;
+            int h = this.query.hashCode();
+            h = 31 * h + this.sort.hashCode();
+            h = 31 * h + this.virtualWikiNames.hashCode();
+            h = 31 * h + this.languages.hashCode();
+            h = 31 * h + (int) (generation ^ (generation >>> 32));
+            this.hash = h;
+        }
+
+        /**
+         * Trims the value and collapses runs of white space, which the query parser ignores.
+         */
+        private static String normalize(String value)
+        {
+            return value == null ? "" : value.trim().replaceAll("\\s+", " ");
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+
+            return this.generation == other.generation && this.query.equals(other.query)
+                && this.sort.equals(other.sort) && this.virtualWikiNames.equals(other.virtualWikiNames)
+                && this.languages.equals(other.languages);
+        }
+    }
+}
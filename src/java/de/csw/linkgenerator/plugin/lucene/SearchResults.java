@@ -19,13 +19,13 @@
 */
 package de.csw.linkgenerator.plugin.lucene;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.lucene.document.Document;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.TopDocsCollector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.model.reference.EntityReferenceSerializer;
@@ -48,37 +48,69 @@ public class SearchResults extends Api
 {
     private final XWiki xwiki;
 
-    private final IndexSearcher searcher;
+    private final TopDocs docs;
 
-    private final TopDocsCollector< ? extends ScoreDoc> results;
+    /** The stored fields of the hits in {@link #docs}, loaded while the searcher was acquired. */
+    private final Document[] documents;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SearchResults.class);
 
     private List<SearchResult> relevantResults;
 
     /**
-* @param results Lucene search results
+* Loads the stored fields of all hits, so the searcher can be released as soon as this constructor returns.
+*
+* @param docs Lucene search results
+* @param searcher the searcher that produced <code>docs</code>
 * @param xwiki xwiki instance for access rights checking
+* @throws IOException if the stored fields of a hit cannot be read
 */
-    public SearchResults(TopDocsCollector< ? extends ScoreDoc> results, IndexSearcher searcher, XWiki xwiki, XWikiContext context)
+    public SearchResults(TopDocs docs, IndexSearcher searcher, XWiki xwiki, XWikiContext context) throws IOException
+    {
+        this(load(docs, searcher), xwiki, context);
+    }
+
+    /**
+* @param hits search results as returned by {@link #getHits()}, possibly for another user
+* @param xwiki xwiki instance for access rights checking
+*/
+    SearchResults(SearchResultCache.Hits hits, XWiki xwiki, XWikiContext context)
     {
         super(context);
 
-        this.results = results;
-        this.searcher = searcher;
+        this.docs = hits.docs;
+        this.documents = hits.documents;
         this.xwiki = xwiki;
     }
 
+    private static SearchResultCache.Hits load(TopDocs docs, IndexSearcher searcher) throws IOException
+    {
+        Document[] documents = new Document[docs.scoreDocs.length];
+        for (int i = 0; i < documents.length; i++) {
+            documents[i] = searcher.doc(docs.scoreDocs[i].doc);
+        }
+
+        return new SearchResultCache.Hits(docs, documents);
+    }
+
+    /**
+* @return the raw hits, independent of the rights of the current user
+*/
+    SearchResultCache.Hits getHits()
+    {
+        return new SearchResultCache.Hits(this.docs, this.documents);
+    }
+
     private List<SearchResult> getRelevantResults()
     {
         if (this.relevantResults == null) {
             this.relevantResults = new ArrayList<SearchResult>();
-            TopDocs docs = this.results.topDocs();
+            TopDocs docs = this.docs;
 
             for (int i = 0; i < docs.scoreDocs.length; i++) {
                 try {
                     SearchResult result =
-                        new SearchResult(this.searcher.doc(docs.scoreDocs[i].doc), docs.scoreDocs[i].score, this.xwiki);
+                        new SearchResult(this.documents[i], docs.scoreDocs[i].score, this.xwiki);
 
                     if (result.isWikiContent()) {
                         String prefixedFullName =
@@ -182,15 +214,14 @@ public class SearchResults extends Api
         List<SearchResult> relResults = this.relevantResults;
         if (relResults == null) {
             relResults = new ArrayList<SearchResult>();
-            TopDocs docs = this.results.topDocs();
+            TopDocs docs = this.docs;
             String database = this.context.getDatabase();
             try {
                 for (int i = 0; i < docs.scoreDocs.length; i++) {
                     SearchResult result = null;
                     try {
                         result =
-                            new SearchResult(this.searcher.doc(docs.scoreDocs[i].doc), docs.scoreDocs[i].score,
-                                this.xwiki);
+                            new SearchResult(this.documents[i], docs.scoreDocs[i].score, this.xwiki);
 
                         this.context.setDatabase(result.getWiki());
 
@@ -246,6 +277,6 @@ public class SearchResults extends Api
 */
     public int getTotalHitcount()
     {
-        return this.results.getTotalHits();
+        return this.docs.totalHits;
     }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.lucene;
+
+import org.apache.lucene.util.Attribute;
+
+/**
+ * The ids of the ontology concepts a token stands for. It is set by the
+ * {@link ConceptFilter} for tokens of type {@link ConceptFilter#CONCEPT_TYPE};
+ * the ids refer to the {@link de.csw.ontology.OntologySnapshot} the filter
+ * matched against.
+ * 
+ * @author rheese
+ * 
+ */
+public interface ConceptAttribute extends Attribute {
+
+	/**
+	 * @return ids of the concepts, an empty array if the token is not a
+	 *         concept. The array is shared and must not be modified.
+	 */
+	public int[] getConcepts();
+
+	/**
+	 * @param concepts
+	 *            ids of the concepts. The array is not copied.
+	 */
+	public void setConcepts(int[] concepts);
+
+	/**
+	 * @return the final state of the {@link de.csw.ontology.ConceptTrie} the
+	 *         label of the token ended in, {@link de.csw.ontology.ConceptTrie#NONE}
+	 *         if the token is not a concept
+	 */
+	public int getState();
+
+	/**
+	 * @param state
+	 *            the final trie state of the label
+	 */
+	public void setState(int state);
+
+	/**
+	 * @return true iff the token is a concept
+	 */
+	public boolean isConcept();
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.lucene;
+
+import java.util.Arrays;
+
+import org.apache.lucene.util.AttributeImpl;
+
+import de.csw.ontology.ConceptTrie;
+
+/**
+ * Default implementation of {@link ConceptAttribute}. The concept ids are
+ * kept by reference, so copying the attribute does not allocate.
+ * 
+ * @author rheese
+ * 
+ */
+public class ConceptAttributeImpl extends AttributeImpl implements ConceptAttribute {
+
+	private static final int[] NO_CONCEPTS = new int[0];
+
+	private int[] concepts = NO_CONCEPTS;
+
+	private int state = ConceptTrie.NONE;
+
+	public int[] getConcepts() {
+		return concepts;
+	}
+
+	public void setConcepts(int[] concepts) {
+		this.concepts = concepts == null ? NO_CONCEPTS : concepts;
+	}
+
+	public int getState() {
+		return state;
+	}
+
+	public void setState(int state) {
+		this.state = state;
+	}
+
+	public boolean isConcept() {
+		return concepts.length > 0;
+	}
+
+	@Override
+	public void clear() {
+		concepts = NO_CONCEPTS;
+		state = ConceptTrie.NONE;
+	}
+
+	@Override
+	public void copyTo(AttributeImpl target) {
+		ConceptAttribute t = (ConceptAttribute) target;
+		t.setConcepts(concepts);
+		t.setState(state);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this)
+			return true;
+		if (other instanceof ConceptAttributeImpl) {
+			ConceptAttributeImpl o = (ConceptAttributeImpl) other;
+			return state == o.state && Arrays.equals(concepts, o.concepts);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(concepts) + state;
+	}
+}
@@ -43,25 +43,35 @@ package de.csw.lucene;
  */
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import org.apache.lucene.util.AttributeSource;
 
+import de.csw.ontology.ConceptTrie;
 import de.csw.ontology.OntologyIndex;
+import de.csw.ontology.OntologySnapshot;
 
 /**
  * A filter that detects concepts from an ontology in the token stream. A
- * concept token is assigned the type {@value #CONCEPT_TYPE}.
+ * concept token is assigned the type {@value #CONCEPT_TYPE} and its
+ * {@link ConceptAttribute} carries the ids of the matching concepts.
+ * <p>
+ * Concepts are matched by walking the {@link ConceptTrie} of the ontology
+ * snapshot over the stemmed tokens. Matching is longest-leftmost: at each
+ * position the longest label is taken, and if no label starts at a position
+ * the token is passed through unchanged and matching resumes at the next
+ * token, so shorter concepts inside a failed longer candidate are still
+ * found. A label does not span a token with a position increment of at least
+ * {@link WikiTokenizer#REGION_POSITION_GAP}, i.e., a skipped link or macro.
+ * Tokens read ahead are kept in a ring buffer of reusable attribute
+ * copies, hence no objects are allocated per token once the buffer has grown
+ * to the length of the longest label.
  * 
  * @author rheese
  * 
@@ -72,15 +82,37 @@ public final class ConceptFilter extends TokenFilter {
 	/** token type of a concept */
 	public static final String CONCEPT_TYPE = "concept"; 
 
+	/** initial capacity of the look ahead buffer, must be a power of two */
+	private static final int INITIAL_CAPACITY = 4;
+
 	private OntologyIndex index;
 
-	/** Tokens that have been read ahead */
-	private final Queue<AttributeSource.State> queue = new LinkedList<AttributeSource.State>();
+	/** snapshot of the ontology the current stream is matched against, see {@link #reset()} */
+	private OntologySnapshot snapshot;
+
+	/** snapshot for the next stream, see {@link #setSnapshot(OntologySnapshot)} */
+	private OntologySnapshot nextSnapshot;
+
+	/** Tokens that have been read ahead, stored as a ring buffer of attribute copies */
+	private AttributeSource[] buffer = new AttributeSource[INITIAL_CAPACITY];
+	private CharTermAttribute[] bufferTerms = new CharTermAttribute[INITIAL_CAPACITY];
+	private OffsetAttribute[] bufferOffsets = new OffsetAttribute[INITIAL_CAPACITY];
+	private PositionIncrementAttribute[] bufferPosIncs = new PositionIncrementAttribute[INITIAL_CAPACITY];
+
+	/** index of the oldest buffered token */
+	private int head;
+
+	/** number of buffered tokens */
+	private int count;
+
+	/** true once the input has returned EOS */
+	private boolean exhausted;
 
 	/** the attributes of the token which the filter is currently reading */
 	private final CharTermAttribute charTermAttribute;
 	private final OffsetAttribute offsetAttribute;
 	private final TypeAttribute typeAttribute;
+	private final ConceptAttribute conceptAttribute;
     
 
 	/**
@@ -94,10 +126,14 @@ public final class ConceptFilter extends TokenFilter {
 	public ConceptFilter(TokenStream in, OntologyIndex oi) {
 		super(in);
 		index = oi;
+		snapshot = oi.getSnapshot();
 		
 		charTermAttribute = input.getAttribute(CharTermAttribute.class);
 		offsetAttribute = input.getAttribute(OffsetAttribute.class);
 		typeAttribute = input.getAttribute(TypeAttribute.class);
+		conceptAttribute = addAttribute(ConceptAttribute.class);
+		// make sure the buffered copies carry it, even if no stage sets it
+		addAttribute(PositionIncrementAttribute.class);
 	}
 
 	
@@ -109,63 +145,152 @@ public final class ConceptFilter extends TokenFilter {
 	 */
 	@Override
 	public boolean incrementToken() throws IOException {
-
-		boolean hasMoreToken = innerNextToken();
-		if (!hasMoreToken) {
+		if (count == 0 && !fill()) {
 			return false;
 		}
 
-		Queue<AttributeSource.State> lookAhead = new LinkedList<AttributeSource.State>();
-		List<String> terms = new ArrayList<String>();
-		terms.add(String.copyValueOf(charTermAttribute.buffer(), 0, charTermAttribute.length()));
+		ConceptTrie trie = snapshot.getConceptTrie();
 
-		while (index.isPrefix(terms) && hasMoreToken) {
-			lookAhead.add(captureState());
-			hasMoreToken = innerNextToken();
-			terms.add(String.copyValueOf(charTermAttribute.buffer(), 0, charTermAttribute.length()));
+		// follow the trie from the oldest buffered token as long as a longer
+		// label is possible and remember the longest label seen so far
+		int state = trie.step(ConceptTrie.ROOT, termAt(0).buffer(), 0, termAt(0).length());
+		int last = trie.isFinal(state) ? 0 : -1;
+		int match = state;
+		for (int i = 1; trie.hasArcs(state); i++) {
+			if (i == count && !fill()) {
+				break;
+			}
+			if (posIncAt(i).getPositionIncrement() >= WikiTokenizer.REGION_POSITION_GAP) {
+				break;
+			}
+			CharTermAttribute term = termAt(i);
+			state = trie.step(state, term.buffer(), 0, term.length());
+			if (trie.isFinal(state)) {
+				last = i;
+				match = state;
+			}
 		}
 
-		// if we have a match ...
-		if (index.hasExactMatches(StringUtils.join(terms.toArray(), OntologyIndex.PREFIX_SEPARATOR))) {
-
-			// ..then we consume all elements in the look ahead, if present
-			if (!lookAhead.isEmpty()) {
-				int maxEndOffset = offsetAttribute.endOffset();
-				restoreState(lookAhead.poll());
-				terms.remove(0); // already present in current token
-				for (String term : terms) {
-					charTermAttribute.append(OntologyIndex.PREFIX_SEPARATOR);
-					charTermAttribute.append(term);
-				}
-
-				offsetAttribute.setOffset(offsetAttribute.startOffset(), maxEndOffset);
+		buffer[head].copyTo(this);
+		if (last >= 0) {
+			// merge the tokens of the concept into the first one
+			for (int i = 1; i <= last; i++) {
+				charTermAttribute.append(OntologyIndex.PREFIX_SEPARATOR).append(termAt(i));
 			}
+			offsetAttribute.setOffset(offsetAttribute.startOffset(), offsetAt(last).endOffset());
 			typeAttribute.setType(CONCEPT_TYPE);
+			conceptAttribute.setConcepts(trie.getConcepts(match));
+			conceptAttribute.setState(match);
 			if (log.isTraceEnabled()) {
-				log.trace("Concept token recognized: " + String.copyValueOf(charTermAttribute.buffer(), 0, charTermAttribute.length()));
-			}
-			
-		} else {
-
-			// .. else we push back in the queue the tokens already read
-			if (!lookAhead.isEmpty()) {
-				lookAhead.add(captureState());
-				restoreState(lookAhead.poll());
-				for (AttributeSource.State laterToken : lookAhead) {
-					queue.add(laterToken);
-				}
+				log.trace("Concept token recognized: " + charTermAttribute);
 			}
 		}
+		consume(last >= 0 ? last + 1 : 1);
+		return true;
+	}
+
+	/**
+	 * Sets the ontology snapshot the next stream is matched against. It
+	 * takes effect with the next {@link #reset()} and applies to that stream
+	 * only. Callers that resolve the matched concepts against a snapshot of
+	 * their own must pass it here, otherwise the ontology may be reloaded in
+	 * between and the trie states would refer to a different snapshot.
+	 * 
+	 * @param s
+	 *            an ontology snapshot
+	 */
+	public void setSnapshot(OntologySnapshot s) {
+		nextSnapshot = s;
+	}
+
+	/**
+	 * Picks up the snapshot set by {@link #setSnapshot(OntologySnapshot)}, or
+	 * else the most recently published one. It is used unchanged until the
+	 * stream is reset again, even if the ontology gets reloaded in the
+	 * meantime.
+	 */
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		head = 0;
+		count = 0;
+		exhausted = false;
+		snapshot = nextSnapshot != null ? nextSnapshot : index.getSnapshot();
+		nextSnapshot = null;
+	}
+
+	/**
+	 * Reads the next token from the input and appends it to the look ahead
+	 * buffer.
+	 * 
+	 * @return false at EOS
+	 */
+	private boolean fill() throws IOException {
+		if (exhausted || !input.incrementToken()) {
+			exhausted = true;
+			return false;
+		}
+		if (count == buffer.length) {
+			grow();
+		}
+		int slot = (head + count) & (buffer.length - 1);
+		if (buffer[slot] == null) {
+			buffer[slot] = cloneAttributes();
+			bufferTerms[slot] = buffer[slot].getAttribute(CharTermAttribute.class);
+			bufferOffsets[slot] = buffer[slot].getAttribute(OffsetAttribute.class);
+			bufferPosIncs[slot] = buffer[slot].getAttribute(PositionIncrementAttribute.class);
+		}
+		copyTo(buffer[slot]);
+		count++;
+		return true;
+	}
 
-		return hasMoreToken;
+	/**
+	 * Drops the given number of tokens from the head of the look ahead buffer.
+	 * The attribute copies stay in place to be reused.
+	 */
+	private void consume(int n) {
+		head = (head + n) & (buffer.length - 1);
+		count -= n;
 	}
 
-	private boolean innerNextToken() throws IOException {
-		if (!queue.isEmpty()) {
-			restoreState(queue.poll());
-			return true;
+	/**
+	 * Doubles the capacity of the look ahead buffer. This only happens until
+	 * the buffer can hold the longest label of the ontology.
+	 */
+	private void grow() {
+		int capacity = buffer.length;
+		AttributeSource[] newBuffer = new AttributeSource[capacity << 1];
+		CharTermAttribute[] newTerms = new CharTermAttribute[capacity << 1];
+		OffsetAttribute[] newOffsets = new OffsetAttribute[capacity << 1];
+		PositionIncrementAttribute[] newPosIncs = new PositionIncrementAttribute[capacity << 1];
+		for (int i = 0; i < capacity; i++) {
+			int slot = (head + i) & (capacity - 1);
+			newBuffer[i] = buffer[slot];
+			newTerms[i] = bufferTerms[slot];
+			newOffsets[i] = bufferOffsets[slot];
+			newPosIncs[i] = bufferPosIncs[slot];
 		}
-		return input.incrementToken();
+		buffer = newBuffer;
+		bufferTerms = newTerms;
+		bufferOffsets = newOffsets;
+		bufferPosIncs = newPosIncs;
+		head = 0;
+	}
+
+	/** @return the term of the i-th buffered token */
+	private CharTermAttribute termAt(int i) {
+		return bufferTerms[(head + i) & (buffer.length - 1)];
+	}
+
+	/** @return the offsets of the i-th buffered token */
+	private OffsetAttribute offsetAt(int i) {
+		return bufferOffsets[(head + i) & (buffer.length - 1)];
+	}
+
+	/** @return the position increment of the i-th buffered token */
+	private PositionIncrementAttribute posIncAt(int i) {
+		return bufferPosIncs[(head + i) & (buffer.length - 1)];
 	}
 
 }
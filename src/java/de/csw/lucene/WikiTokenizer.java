@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.lucene;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+/**
+ * A tokenizer for xWiki 2.x syntax that splits the text into runs of letters
+ * and digits. Regions of the text that must not be enhanced are skipped while
+ * reading, so no token is ever emitted from inside them:
+ * <ul>
+ * <li>links: <code>[[...]]</code></li>
+ * <li>link sets: <code>&lt;csw:linkset ...&gt;...&lt;/csw:linkset&gt;</code></li>
+ * <li>script and html macros:
+ * <code>{{velocity|groovy|html ...}}...{{/velocity|groovy|html}}</code></li>
+ * </ul>
+ * A region extends to the first matching end marker, or to the end of the
+ * text if there is none. The text is read in a single pass. The first token
+ * after a region has a position increment of {@link #REGION_POSITION_GAP}, so
+ * that labels are not matched across a region.
+ * 
+ * @author rheese
+ * 
+ */
+public final class WikiTokenizer extends Tokenizer {
+
+	/** tokens that are longer are dropped, as in the StandardTokenizer */
+	public static final int MAX_TOKEN_LENGTH = 255;
+
+	/** position increment of the first token after a skipped region */
+	public static final int REGION_POSITION_GAP = 100;
+
+	/** macros whose content is excluded */
+	private static final String[] EXCLUDED_MACROS = { "velocity", "groovy", "html" };
+	private static final String[] MACRO_STARTS = new String[EXCLUDED_MACROS.length];
+	private static final String[] MACRO_ENDS = new String[EXCLUDED_MACROS.length];
+	static {
+		for (int i = 0; i < EXCLUDED_MACROS.length; i++) {
+			MACRO_STARTS[i] = "{{" + EXCLUDED_MACROS[i];
+			MACRO_ENDS[i] = "{{/" + EXCLUDED_MACROS[i] + "}}";
+		}
+	}
+
+	private static final String LINK_START = "[[";
+	private static final String LINK_END = "]]";
+	private static final String LINKSET_START = "<csw:linkset";
+	private static final String LINKSET_END = "</csw:linkset>";
+
+	/** first char of a heading line */
+	private static final char HEADING = '=';
+
+	private static final int BUFFER_SIZE = 4096;
+
+	/** window of the input; all markers are shorter than the buffer */
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int pos;
+	private int limit;
+
+	/** offset of buffer[0] in the text */
+	private int bufferOffset;
+
+	private boolean eof;
+
+	/** true if a region has been skipped since the last token */
+	private boolean afterRegion;
+
+	private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+	private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+	private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+	// not set by the tokenizer, but the ConceptFilter marks concepts with it
+	private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+
+	/**
+	 * @param input
+	 *            the wiki text
+	 */
+	public WikiTokenizer(Reader input) {
+		super(input);
+	}
+
+	@Override
+	public boolean incrementToken() throws IOException {
+		clearAttributes();
+		while (fill(1)) {
+			char c = buffer[pos];
+			if (Character.isLetterOrDigit(c)) {
+				if (readToken()) {
+					if (afterRegion) {
+						posIncAtt.setPositionIncrement(REGION_POSITION_GAP);
+						afterRegion = false;
+					}
+					return true;
+				}
+			} else if (c == '[' && startsWith(LINK_START)) {
+				skipTo(LINK_START.length(), LINK_END);
+			} else if (c == '{' && skipMacro()) {
+				// skipped
+			} else if (c == '<' && startsWith(LINKSET_START)) {
+				skipTo(LINKSET_START.length(), LINKSET_END);
+			} else {
+				pos++;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the run of letters and digits at the current position into the
+	 * term attribute.
+	 * 
+	 * @return false if the token is too long and has been dropped
+	 */
+	private boolean readToken() throws IOException {
+		int start = bufferOffset + pos;
+		int length = 0;
+		termAtt.setEmpty();
+		while (fill(1) && Character.isLetterOrDigit(buffer[pos])) {
+			if (length < MAX_TOKEN_LENGTH)
+				termAtt.append(buffer[pos]);
+			length++;
+			pos++;
+		}
+		if (length > MAX_TOKEN_LENGTH) {
+			termAtt.setEmpty();
+			return false;
+		}
+		offsetAtt.setOffset(correctOffset(start), correctOffset(start + length));
+		return true;
+	}
+
+	/**
+	 * Skips an excluded macro if one starts at the current position.
+	 * 
+	 * @return true iff a macro has been skipped
+	 */
+	private boolean skipMacro() throws IOException {
+		for (int i = 0; i < MACRO_STARTS.length; i++) {
+			if (startsWith(MACRO_STARTS[i])) {
+				skipTo(MACRO_STARTS[i].length(), MACRO_ENDS[i]);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Skips the start marker of a region and everything up to and including
+	 * <code>end</code>.
+	 */
+	private void skipTo(int startLength, String end) throws IOException {
+		afterRegion = true;
+		pos += startLength;
+		char first = end.charAt(0);
+		while (fill(end.length())) {
+			if (buffer[pos] == first && startsWith(end)) {
+				pos += end.length();
+				return;
+			}
+			pos++;
+		}
+		// no end marker, the region extends to the end of the text
+		pos = limit;
+	}
+
+	/**
+	 * @return true iff the text at the current position starts with
+	 *         <code>s</code>
+	 */
+	private boolean startsWith(String s) throws IOException {
+		if (!fill(s.length()))
+			return false;
+		for (int i = 0; i < s.length(); i++) {
+			if (buffer[pos + i] != s.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Makes sure that at least <code>n</code> characters are available from
+	 * the current position, reading more input if necessary.
+	 * 
+	 * @return false if the text ends before
+	 */
+	private boolean fill(int n) throws IOException {
+		if (limit - pos >= n)
+			return true;
+		if (eof)
+			return false;
+		// move the remaining chars to the front
+		int remaining = limit - pos;
+		System.arraycopy(buffer, pos, buffer, 0, remaining);
+		bufferOffset += pos;
+		pos = 0;
+		limit = remaining;
+		while (limit < n) {
+			int read = input.read(buffer, limit, buffer.length - limit);
+			if (read == -1) {
+				eof = true;
+				return false;
+			}
+			limit += read;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the end of an excluded region that starts at <code>pos</code>,
+	 * following the same rules as the tokenizer. Used to split a text without
+	 * cutting through a region.
+	 * 
+	 * @param text
+	 *            a wiki text
+	 * @param pos
+	 *            a position in the text
+	 * @return the position after the region, the end of the text if the
+	 *         region is not closed, or <code>pos</code> if no region starts
+	 *         there
+	 */
+	public static int skipRegion(String text, int pos) {
+		if (text.startsWith(LINK_START, pos))
+			return regionEnd(text, pos + LINK_START.length(), LINK_END);
+		if (text.startsWith(LINKSET_START, pos))
+			return regionEnd(text, pos + LINKSET_START.length(), LINKSET_END);
+		for (int i = 0; i < MACRO_STARTS.length; i++) {
+			if (text.startsWith(MACRO_STARTS[i], pos))
+				return regionEnd(text, pos + MACRO_STARTS[i].length(), MACRO_ENDS[i]);
+		}
+		return pos;
+	}
+
+	/**
+	 * Finds the end of the block of <code>text</code> starting at
+	 * <code>start</code>. A block ends after a blank line, together with the
+	 * blank lines following it, or before a heading. Boundaries inside links
+	 * and macros are ignored, so blocks can be tokenized independently.
+	 * 
+	 * @param text
+	 *            a wiki text
+	 * @param start
+	 *            start of a block, i.e., <code>0</code> or the end of the
+	 *            previous block
+	 * @return the start of the next block or the end of the text
+	 */
+	public static int nextBlock(String text, int start) {
+		int n = text.length();
+		int i = start;
+		while (i < n) {
+			int skipped = skipRegion(text, i);
+			if (skipped > i) {
+				i = skipped;
+				continue;
+			}
+			if (text.charAt(i++) != '\n')
+				continue;
+			if (i < n && text.charAt(i) == HEADING)
+				return i;
+			// a line containing whitespace only ends the block
+			int j = skipBlanks(text, i);
+			if (j < n && text.charAt(j) == '\n') {
+				do {
+					i = j + 1;
+					j = skipBlanks(text, i);
+				} while (j < n && text.charAt(j) == '\n');
+				return i;
+			}
+		}
+		return n;
+	}
+
+	private static int skipBlanks(String text, int i) {
+		while (i < text.length()) {
+			char c = text.charAt(i);
+			if (c != ' ' && c != '\t' && c != '\r')
+				break;
+			i++;
+		}
+		return i;
+	}
+
+	private static int regionEnd(String text, int from, String end) {
+		int i = text.indexOf(end, from);
+		return i < 0 ? text.length() : i + end.length();
+	}
+
+	@Override
+	public void end() {
+		int finalOffset = correctOffset(bufferOffset + limit);
+		offsetAtt.setOffset(finalOffset, finalOffset);
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		pos = 0;
+		limit = 0;
+		bufferOffset = 0;
+		eof = false;
+		afterRegion = false;
+	}
+}
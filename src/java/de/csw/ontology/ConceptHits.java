@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.ontology;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The concepts recognized in a text, as found by
+ * {@link XWikiTextEnhancer#findConcepts(String, OntologySnapshot)}. Clients
+ * that decorate the rendered page themselves get the hits as JSON:
+ * 
+ * <pre>
+ * {"ontology":"fingerprint",
+ *  "links":[{"concepts":["uri",...],"url":"search url","title":"title"},...],
+ *  "hits":[["text",link],...]}
+ * </pre>
+ * 
+ * Each hit is the matched text with an index into <code>links</code>, which
+ * lists every recognized label once. The hits are listed in the order they
+ * occur in the text, so a client finds each of them in the rendered page by
+ * searching for its text after the previous hit. Offsets into the wiki
+ * source would be of no use there.
+ * 
+ * @author rheese
+ * 
+ */
+public final class ConceptHits {
+
+	private final OntologySnapshot snapshot;
+
+	/** the text the offsets refer to */
+	private final String text;
+
+	/** start, end and trie state of every hit */
+	private int[] hits = new int[3 * 16];
+	private int size;
+
+	ConceptHits(OntologySnapshot snapshot, String text) {
+		this.snapshot = snapshot;
+		this.text = text;
+	}
+
+	void add(int start, int end, int state) {
+		if (3 * size == hits.length)
+			hits = Arrays.copyOf(hits, 2 * hits.length);
+		hits[3 * size] = start;
+		hits[3 * size + 1] = end;
+		hits[3 * size + 2] = state;
+		size++;
+	}
+
+	/**
+	 * @return the number of hits
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return start offset of the i-th hit
+	 */
+	public int getStart(int i) {
+		return hits[3 * i];
+	}
+
+	/**
+	 * @return end offset of the i-th hit, exclusive
+	 */
+	public int getEnd(int i) {
+		return hits[3 * i + 1];
+	}
+
+	/**
+	 * @return the matched text of the i-th hit
+	 */
+	public String getText(int i) {
+		return text.substring(getStart(i), getEnd(i));
+	}
+
+	/**
+	 * @return the final trie state of the label of the i-th hit, see
+	 *         {@link ConceptLinks}
+	 */
+	public int getState(int i) {
+		return hits[3 * i + 2];
+	}
+
+	/**
+	 * @return the hits as compact JSON
+	 */
+	public String toJson() {
+		ConceptLinks links = snapshot.getConceptLinks();
+		ConceptTrie trie = snapshot.getConceptTrie();
+		StringBuilder sb = new StringBuilder(64 + 16 * size);
+		StringBuilder hitsJson = new StringBuilder(24 * size);
+		// trie state => index into links
+		Map<Integer, Integer> linkIdx = new HashMap<Integer, Integer>();
+
+		sb.append("{\"ontology\":\"").append(Long.toHexString(snapshot.getFingerprint())).append("\",\"links\":[");
+		for (int i = 0; i < size; i++) {
+			Integer state = Integer.valueOf(getState(i));
+			Integer link = linkIdx.get(state);
+			if (link == null) {
+				link = Integer.valueOf(linkIdx.size());
+				linkIdx.put(state, link);
+				if (link.intValue() > 0)
+					sb.append(',');
+				sb.append("{\"concepts\":[");
+				int[] concepts = trie.getConcepts(state.intValue());
+				for (int c = 0; c < concepts.length; c++) {
+					if (c > 0)
+						sb.append(',');
+					quote(sb, snapshot.getConceptUri(concepts[c]));
+				}
+				sb.append("],\"url\":");
+				quote(sb, links.getUrl(state.intValue()));
+				sb.append(",\"title\":");
+				quote(sb, links.getTitle(state.intValue()));
+				sb.append('}');
+			}
+			if (i > 0)
+				hitsJson.append(',');
+			hitsJson.append('[');
+			quote(hitsJson, getText(i));
+			hitsJson.append(',').append(link).append(']');
+		}
+		sb.append("],\"hits\":[").append(hitsJson).append("]}");
+		return sb.toString();
+	}
+
+	/**
+	 * Appends <code>s</code> as a JSON string. '&lt;' is escaped as well, so
+	 * the result can be embedded in a script element.
+	 */
+	private static void quote(StringBuilder sb, String s) {
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20 || c == '<') {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		sb.append('"');
+	}
+}
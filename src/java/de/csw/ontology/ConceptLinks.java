@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.ontology;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+import de.csw.util.URLEncoder;
+
+/**
+ * The wiki link targets of all concept labels of an {@link OntologySnapshot}.
+ * For every final state of the {@link ConceptTrie} the part of the link that
+ * follows the annotated term is rendered once when the snapshot is compiled:
+ * 
+ * <pre>
+ * &gt;&gt;searchUrl?text=...||class=&quot;similarconcept&quot; title=&quot;Suche nach den verwandten Begriffen: ...&quot;]]
+ * </pre>
+ * 
+ * The search terms are the labels of the similar concepts, the title lists
+ * the ones whose stem differs from the label. URL and title are also
+ * available on their own for clients that render the links themselves.
+ * Instances are immutable.
+ * 
+ * @author rheese
+ * 
+ */
+public final class ConceptLinks {
+
+	private static final String TITLE_PREFIX = "Suche nach den verwandten Begriffen: ";
+
+	/** trie state => link fragment, <code>null</code> if nothing to link */
+	private final String[] fragments;
+
+	/** trie state => URL of the search page, <code>null</code> if nothing to link */
+	private final String[] urls;
+
+	/** trie state => title of the link, <code>null</code> if nothing to link */
+	private final String[] titles;
+
+	/**
+	 * Renders the link fragments of all labels of <code>snapshot</code>.
+	 * 
+	 * @param snapshot
+	 *            a compiled snapshot
+	 * @param searchUrl
+	 *            URL of the search page of the wiki
+	 * @param maxConcepts
+	 *            maximum number of similar concepts per link
+	 */
+	ConceptLinks(OntologySnapshot snapshot, String searchUrl, int maxConcepts) {
+		ConceptTrie trie = snapshot.getConceptTrie();
+		fragments = new String[trie.size()];
+		urls = new String[trie.size()];
+		titles = new String[trie.size()];
+		for (int state = 0; state < fragments.length; state++) {
+			if (trie.isFinal(state)) {
+				render(snapshot, searchUrl, state, maxConcepts);
+			}
+		}
+	}
+
+	/**
+	 * @param state
+	 *            the final trie state of a recognized label
+	 * @return the link fragment or <code>null</code> if the label is not
+	 *         linked
+	 */
+	public String getFragment(int state) {
+		return state >= 0 && state < fragments.length ? fragments[state] : null;
+	}
+
+	/**
+	 * @param state
+	 *            the final trie state of a recognized label
+	 * @return the URL of the search page or <code>null</code> if the label is
+	 *         not linked
+	 */
+	public String getUrl(int state) {
+		return state >= 0 && state < urls.length ? urls[state] : null;
+	}
+
+	/**
+	 * @param state
+	 *            the final trie state of a recognized label
+	 * @return the title of the link or <code>null</code> if the label is not
+	 *         linked
+	 */
+	public String getTitle(int state) {
+		return state >= 0 && state < titles.length ? titles[state] : null;
+	}
+
+	private void render(OntologySnapshot snapshot, String searchUrl, int state, int maxConcepts) {
+		ConceptTrie trie = snapshot.getConceptTrie();
+		String stemBase = trie.getPath(state);
+		int[] similar = snapshot.getSimilarConcepts(trie.getConcepts(state), maxConcepts);
+
+		// labels to search for, and the ones that differ from the term for the title
+		List<String> matches = new ArrayList<String>();
+		List<String> related = new ArrayList<String>();
+		for (int id : similar) {
+			List<String> labels = snapshot.getConceptLabels(id);
+			List<String> stems = snapshot.getConceptLabelStems(id);
+			for (int i = 0; i < labels.size(); i++) {
+				matches.add(labels.get(i));
+				if (!stemBase.equals(stems.get(i))) {
+					related.add(labels.get(i));
+				}
+			}
+		}
+
+		if (matches.isEmpty())
+			return;
+
+		urls[state] = getSearchURL(searchUrl, matches);
+		titles[state] = TITLE_PREFIX + StringUtils.join(related, ", ");
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(">>").append(urls[state]);
+		sb.append("||class=\"similarconcept\"");
+		sb.append(" title=\"").append(titles[state]);
+		sb.append("\"]]");
+		fragments[state] = sb.toString();
+	}
+
+	/**
+	 * Creates a link to the search wiki page.
+	 * 
+	 * @param searchUrl
+	 *            URL of the search page
+	 * @param terms
+	 *            a collection of search terms
+	 * @return the link
+	 */
+	static String getSearchURL(String searchUrl, Collection<String> terms) {
+		return searchUrl + "?text=" + URLEncoder.encode(StringUtils.join(terms, ' '));
+	}
+}
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.ontology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.util.CharArrayMap;
+import org.apache.lucene.util.Version;
+
+/**
+ * A trie over sequences of stemmed tokens. Each path from the root spells
+ * the stemmed fragments of a concept label; the state reached at the end of
+ * a label carries the ids of the concepts having that label. It replaces the
+ * former label index and prefix index: a multi-word label is recognized by
+ * following one arc per token, and a state with outgoing arcs is a prefix.
+ * <p>
+ * Tokens are looked up directly from a <code>char[]</code> buffer, so
+ * walking the trie does not create any strings. Instances are immutable and
+ * created with a {@link Builder}.
+ * </p>
+ * 
+ * @author rheese
+ * 
+ */
+public final class ConceptTrie {
+	/** the state the walk for every label starts in */
+	public static final int ROOT = 0;
+
+	/** returned by the step methods if there is no such arc */
+	public static final int NONE = -1;
+
+	private static final int[] NO_CONCEPTS = new int[0];
+
+	/** marks an empty slot in {@link #arcKeys}; real keys are never negative */
+	private static final long EMPTY = -1L;
+
+	/** stem => term id */
+	private final CharArrayMap<Integer> termIds;
+
+	/** term id => stem */
+	private final String[] terms;
+
+	/** open addressing hash table of arcs, key = state << 32 | term id */
+	private final long[] arcKeys;
+	private final int[] arcTargets;
+	private final int mask;
+
+	/** state => number of outgoing arcs */
+	private final int[] arcCount;
+
+	/** state => source state and term id of the incoming arc */
+	private final int[] parent;
+	private final int[] incoming;
+
+	/** state => ids of the concepts whose label ends here */
+	private final int[][] concepts;
+
+	private ConceptTrie(Builder b) {
+		termIds = new CharArrayMap<Integer>(Version.LUCENE_40, b.terms.size(), false);
+		for (Map.Entry<String, Integer> e : b.termIds.entrySet()) {
+			termIds.put(e.getKey(), e.getValue());
+		}
+		terms = b.terms.toArray(new String[b.terms.size()]);
+
+		int size = Integer.highestOneBit(Math.max(b.arcs.size(), 1) * 2) * 2;
+		mask = size - 1;
+		arcKeys = new long[size];
+		arcTargets = new int[size];
+		Arrays.fill(arcKeys, EMPTY);
+		for (Map.Entry<Long, Integer> e : b.arcs.entrySet()) {
+			long key = e.getKey().longValue();
+			int slot = slot(key);
+			while (arcKeys[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			arcKeys[slot] = key;
+			arcTargets[slot] = e.getValue().intValue();
+		}
+
+		int states = b.parent.size();
+		arcCount = new int[states];
+		parent = new int[states];
+		incoming = new int[states];
+		concepts = new int[states][];
+		for (int s = 0; s < states; s++) {
+			parent[s] = b.parent.get(s);
+			incoming[s] = b.incoming.get(s);
+			concepts[s] = b.concepts.get(s);
+			if (s != ROOT)
+				arcCount[parent[s]]++;
+		}
+	}
+
+	/**
+	 * Follows the arc labeled with the stem in <code>buffer[offset..offset+length)</code>.
+	 * 
+	 * @param state
+	 *            current state, {@link #NONE} is passed through
+	 * @return the next state or {@link #NONE}
+	 */
+	public int step(int state, char[] buffer, int offset, int length) {
+		if (state == NONE)
+			return NONE;
+		Integer term = termIds.get(buffer, offset, length);
+		return term != null ? arc(state, term.intValue()) : NONE;
+	}
+
+	/**
+	 * Follows the arc labeled with <code>stem</code>.
+	 * 
+	 * @param state
+	 *            current state, {@link #NONE} is passed through
+	 * @return the next state or {@link #NONE}
+	 */
+	public int step(int state, CharSequence stem) {
+		if (state == NONE)
+			return NONE;
+		Integer term = termIds.get(stem);
+		return term != null ? arc(state, term.intValue()) : NONE;
+	}
+
+	/**
+	 * @return true iff there are labels continuing after <code>state</code>,
+	 *         i.e., the path to <code>state</code> is a proper prefix of a
+	 *         label
+	 */
+	public boolean hasArcs(int state) {
+		return state != NONE && arcCount[state] > 0;
+	}
+
+	/**
+	 * @return true iff a label ends in <code>state</code>
+	 */
+	public boolean isFinal(int state) {
+		return state != NONE && concepts[state].length > 0;
+	}
+
+	/**
+	 * @return ids of the concepts whose label ends in <code>state</code>; must
+	 *         not be modified
+	 */
+	public int[] getConcepts(int state) {
+		return state != NONE ? concepts[state] : NO_CONCEPTS;
+	}
+
+	/**
+	 * @return the number of states
+	 */
+	public int size() {
+		return concepts.length;
+	}
+
+	/**
+	 * Reconstructs the stems on the path to <code>state</code>, separated by
+	 * {@link OntologyIndex#PREFIX_SEPARATOR}. Intended for diagnostics.
+	 */
+	public String getPath(int state) {
+		StringBuilder sb = new StringBuilder();
+		for (int s = state; s != ROOT; s = parent[s]) {
+			if (sb.length() > 0)
+				sb.insert(0, OntologyIndex.PREFIX_SEPARATOR);
+			sb.insert(0, terms[incoming[s]]);
+		}
+		return sb.toString();
+	}
+
+	private int arc(int state, int term) {
+		long key = key(state, term);
+		int slot = slot(key);
+		long k;
+		while ((k = arcKeys[slot]) != EMPTY) {
+			if (k == key)
+				return arcTargets[slot];
+			slot = (slot + 1) & mask;
+		}
+		return NONE;
+	}
+
+	private static long key(int state, int term) {
+		return ((long)state << 32) | term;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	/**
+	 * Collects labels and builds an immutable {@link ConceptTrie}.
+	 */
+	public static final class Builder {
+		final Map<String, Integer> termIds = new HashMap<String, Integer>();
+		final List<String> terms = new ArrayList<String>();
+		final Map<Long, Integer> arcs = new HashMap<Long, Integer>();
+		final List<Integer> parent = new ArrayList<Integer>();
+		final List<Integer> incoming = new ArrayList<Integer>();
+		final List<int[]> concepts = new ArrayList<int[]>();
+
+		public Builder() {
+			// the root
+			newState(ROOT, -1);
+		}
+
+		/**
+		 * Adds a label to the trie.
+		 * 
+		 * @param stems
+		 *            the stemmed fragments of the label
+		 * @param concept
+		 *            id of the concept having the label
+		 * @return the final state of the label
+		 */
+		public int add(String[] stems, int concept) {
+			int state = ROOT;
+			for (String stem : stems) {
+				Integer term = termIds.get(stem);
+				if (term == null) {
+					term = Integer.valueOf(terms.size());
+					termIds.put(stem, term);
+					terms.add(stem);
+				}
+				Long key = Long.valueOf(key(state, term.intValue()));
+				Integer next = arcs.get(key);
+				if (next == null) {
+					next = Integer.valueOf(newState(state, term.intValue()));
+					arcs.put(key, next);
+				}
+				state = next.intValue();
+			}
+
+			int[] ids = concepts.get(state);
+			for (int id : ids) {
+				if (id == concept)
+					return state;
+			}
+			ids = Arrays.copyOf(ids, ids.length + 1);
+			ids[ids.length - 1] = concept;
+			concepts.set(state, ids);
+			return state;
+		}
+
+		private int newState(int from, int term) {
+			parent.add(Integer.valueOf(from));
+			incoming.add(Integer.valueOf(term));
+			concepts.add(NO_CONCEPTS);
+			return concepts.size() - 1;
+		}
+
+		public ConceptTrie build() {
+			return new ConceptTrie(this);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.ontology;
+
+/**
+ * State of a single {@link XWikiTextEnhancer#enhance(java.io.Reader, Appendable)} call. Every call
+ * gets its own context, so one enhancer can serve any number of threads at
+ * once.
+ * 
+ * @author rheese
+ * 
+ */
+public class EnhancementContext {
+
+	/** deadline of calls that may take any time */
+	public static final long NO_DEADLINE = Long.MIN_VALUE;
+
+	/** all lookups of the call use this version of the ontology */
+	private final OntologySnapshot snapshot;
+
+	/** {@link System#nanoTime()} after which the call is given up */
+	private final long deadline;
+
+	/**
+	 * @param snapshot
+	 *            the ontology snapshot used for the whole call
+	 */
+	public EnhancementContext(OntologySnapshot snapshot) {
+		this(snapshot, NO_DEADLINE);
+	}
+
+	/**
+	 * @param snapshot
+	 *            the ontology snapshot used for the whole call
+	 * @param deadline
+	 *            value of {@link System#nanoTime()} after which the call is
+	 *            given up, or {@link #NO_DEADLINE}
+	 */
+	public EnhancementContext(OntologySnapshot snapshot, long deadline) {
+		this.snapshot = snapshot;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * @return true iff the call has a deadline and it has passed
+	 */
+	public boolean isExpired() {
+		return deadline != NO_DEADLINE && System.nanoTime() - deadline > 0;
+	}
+
+	/**
+	 * @return the ontology snapshot used for the whole call
+	 */
+	public OntologySnapshot getSnapshot() {
+		return snapshot;
+	}
+}
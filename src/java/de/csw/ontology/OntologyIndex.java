@@ -26,33 +26,36 @@
 package de.csw.ontology;
 
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.de.CachingStemmer;
 import org.apache.lucene.analysis.de.GermanStemmer;
 import org.apache.lucene.analysis.de.Stemmer;
 
 import com.hp.hpl.jena.ontology.OntClass;
 import com.hp.hpl.jena.ontology.OntModel;
 import com.hp.hpl.jena.ontology.OntModelSpec;
-import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
-import com.hp.hpl.jena.util.iterator.ExtendedIterator;
 
 import de.csw.ontology.util.OntologyUtils;
-import de.csw.ontology.vocabular.Jura;
+import de.csw.util.Config;
 
 /**
  * The class encapsulates the access to an ontology.
+ * <p>
+ * All data is held in an immutable {@link OntologySnapshot}. Loading or
+ * reloading the ontology compiles a new snapshot off to the side and
+ * publishes it with a single atomic reference swap, so readers never block
+ * and never see a half-built index. Callers that issue several lookups that
+ * have to be consistent with each other (e.g. while enhancing a page) should
+ * fetch the snapshot once via {@link #getSnapshot()} and work on it.
+ * </p>
  * 
  * @author rheese
  * 
@@ -63,45 +66,53 @@ public class OntologyIndex {
 	/** character that is used to concatenate two fragments in the context of a prefix index */
 	public static final char PREFIX_SEPARATOR = ' ';
 	
-	static OntologyIndex instance;
+	static final OntologyIndex instance = new OntologyIndex();
 	
-	/** Stemmer to get discriminators from a term. By default it is a GermanStemmer */
+	/**
+	 * Stemmer to get discriminators from a term. By default it is a
+	 * GermanStemmer, wrapped by a {@link CachingStemmer} unless
+	 * {@link Config#STEMMER_CACHE_SIZE} is 0. It is shared by all threads, including the analyzers
+	 * that stem the page text.
+	 */
 	Stemmer stemmer;
 
-	/** Index for mapping labels (in its stemmed version) to concepts of the ontology. */
-	// TODO encapsulate in a separate class
-	Map<String, OntClass[]> labelIdx = new HashMap<String, OntClass[]>();
-	
-	/** The set contains all prefixes of the concepts, see {@link #generatePrefixes(String)} */
-	// TODO encapsulate in a separate class
-	Set<String> prefixIdx = new HashSet<String>(); 
-	
-	/** Jena model of the ontology */
-	OntModel model;
+	/** The currently published snapshot of the ontology and its indexes */
+	private final AtomicReference<OntologySnapshot> snapshot = new AtomicReference<OntologySnapshot>();
 	
 	/**
 	 * Use {@link #get()} to retrieve an instance. The constructor creates an
 	 * instance containing an empty ontology model.
 	 */
 	private OntologyIndex() {
-		model = ModelFactory.createOntologyModel(OntModelSpec.OWL_LITE_MEM);
-		stemmer = new GermanStemmer();
+		int cacheSize = Config.getIntAppProperty(Config.STEMMER_CACHE_SIZE);
+		stemmer = cacheSize > 0 ? new CachingStemmer(new GermanStemmer(), cacheSize) : new GermanStemmer();
+		snapshot.set(OntologySnapshot.compile(createModel(), stemmer, false));
 	}
 
 	/**
 	 * @return the only OntologyIndex instance.
 	 */
 	public static OntologyIndex get() {
-		if (instance == null)
-			instance = new OntologyIndex();
 		return instance;
 	}
 
 	/**
-	 * @return the ontology model
+	 * @return the currently published snapshot. It never changes, even if the
+	 *         ontology is reloaded while the caller is working on it.
+	 */
+	public OntologySnapshot getSnapshot() {
+		return snapshot.get();
+	}
+
+	/**
+	 * @return the ontology model of the current snapshot. Must be treated as
+	 *         read-only.
+	 * @throws IllegalStateException
+	 *             if the model has been released, see
+	 *             {@link Config#ONTOLOGY_RELEASE_MODEL}
 	 */
 	public OntModel getModel() {
-		return model;
+		return getSnapshot().getModel();
 	}
 	
 	/**
@@ -125,69 +136,7 @@ public class OntologyIndex {
 	 * @return a list of matching concepts URIs
 	 */
 	public List<OntClass> getSimilarMatches(String term, int limit) {
-		List<OntClass> classes = getExactMatches(term);
-		// difference between the limit and the current size of the result
-		int free;
-		
-		// check if we reached the limit
-		if (classes.size() > limit) {
-			classes = classes.subList(0, limit);
-			return classes;
-		}
-			
-		
-		Set<OntClass> result = new HashSet<OntClass>();
-		List<OntClass> tmp;
-
-		result.addAll(classes);
-		free = limit - result.size();
-		
-		// synonyms
-		if (free > 0) {
-			for (OntClass c : classes) {
-				tmp = getSynonyms(c);
-				if (tmp.size() > free) {
-					result.addAll(tmp.subList(0, free));
-					free = 0;
-					break;
-				} else {
-					result.addAll(tmp);
-					free = limit - result.size();
-				}
-			}
-		}
-		
-		// children
-		if (free > 0) {
-			for (OntClass c : classes) {
-				tmp = getChildren(c);
-				if (tmp.size() > free) {
-					result.addAll(tmp.subList(0, free));
-					free = 0;
-					break;
-				} else {
-					result.addAll(tmp);
-					free = limit - result.size();
-				}
-			}
-		}
-			
-		// parents
-		if (free > 0) {
-			for (OntClass c : classes) {
-				tmp = getParents(c);
-				if (tmp.size() > free) {
-					result.addAll(tmp.subList(0, free));
-					free = 0;
-					break;
-				} else {
-					result.addAll(tmp);
-					free = limit - result.size();
-				}
-			}
-		}
-
-		return new ArrayList<OntClass>(result);
+		return getSnapshot().getSimilarMatches(term, limit);
 	}
 
 	/**
@@ -200,18 +149,7 @@ public class OntologyIndex {
 	 * @return a list of matching concepts URIs
 	 */
 	public List<OntClass> getSimilarMatches(String term) {
-		List<OntClass> classes = getExactMatches(term);
-		
-		Set<OntClass> result = new HashSet<OntClass>();
-		result.addAll(classes);
-		
-		for (OntClass c : classes) {
-			result.addAll(getSynonyms(c));
-			result.addAll(getChildren(c));
-			result.addAll(getParents(c));
-		}
-		
-		return new ArrayList<OntClass>(result);
+		return getSnapshot().getSimilarMatches(term);
 	}
 
 	/**
@@ -221,7 +159,7 @@ public class OntologyIndex {
 	 * @return labels of the synonyms
 	 */
 	public List<String> getSimilarMatchLabels(String term) {
-		return OntologyUtils.getLabels(getSimilarMatches(term));
+		return getSnapshot().getSimilarMatchLabels(term);
 	}
 
 	/**
@@ -231,7 +169,7 @@ public class OntologyIndex {
 	 * @return labels of the synonyms
 	 */
 	public List<String> getSimilarMatchLabels(String term, int limit) {
-		return OntologyUtils.getLabels(getSimilarMatches(term, limit));
+		return getSnapshot().getSimilarMatchLabels(term, limit);
 	}
 
 	/**
@@ -241,7 +179,7 @@ public class OntologyIndex {
 	 *         <code>null</code>.
 	 */
 	public boolean hasExactMatches(String term) {
-		return getFirstExactMatch(term) != null;
+		return getSnapshot().hasExactMatches(term);
 	}
 
 	/**
@@ -255,7 +193,7 @@ public class OntologyIndex {
 	 */
 	// TODO include a more flexible search using Levenshtein for words with a length > 5
 	public List<OntClass> getExactMatches(String term) {
-		return getFromLabelIndex(stemmer.stem(term));
+		return getSnapshot().getExactMatches(term);
 	}
 
 	/**
@@ -265,7 +203,7 @@ public class OntologyIndex {
 	 * @return labels of the synonyms
 	 */
 	public List<String> getExactMatchLabels(String term) {
-		return OntologyUtils.getLabels(getExactMatches(term));
+		return getSnapshot().getExactMatchLabels(term);
 	}
 
 	/**
@@ -277,8 +215,7 @@ public class OntologyIndex {
 	 * @return first matching concept or <code>null</code>
 	 */
 	public OntClass getFirstExactMatch(String term) {
-		List<OntClass> matches =  getFromLabelIndex(stemmer.stem(term));
-		return matches.size() > 0 ? matches.get(0) : null;
+		return getSnapshot().getFirstExactMatch(term);
 	}
 
 	/**
@@ -292,21 +229,7 @@ public class OntologyIndex {
 	 * @return a list of synonym concepts URIs
 	 */
 	public List<OntClass> getSynonyms(OntClass clazz) {
-		if (clazz == null)
-			return Collections.emptyList();
-		
-		Set<OntClass> result = new HashSet<OntClass>();
-
-		// the one way
-		ExtendedIterator equivIter = clazz.listEquivalentClasses();
-		while(equivIter.hasNext()) {
-			OntClass synonym = (OntClass)equivIter.next();
-			if (!synonym.isAnon() && !synonym.hasLiteral(Jura.invisible, true)) {
-				result.add(synonym);
-			}
-		}
-		
-		return new ArrayList<OntClass>(result);
+		return getSnapshot().getSynonyms(clazz);
 	}
 
 	/**
@@ -330,21 +253,7 @@ public class OntologyIndex {
 	 */
 	// TODO add all synonyms of the parents to the result
 	public List<OntClass> getParents(OntClass clazz) {
-		if (clazz == null)
-			return Collections.emptyList();
-		
-		List<OntClass> result = new ArrayList<OntClass>();
-
-		ExtendedIterator parentIter = clazz.listSuperClasses(true);
-		while(parentIter.hasNext()) {
-			OntClass parent = (OntClass) parentIter.next();
-
-			if (!parent.isAnon() && !parent.hasLiteral(Jura.invisible, true)) {
-				result.add(parent);
-			}
-		}
-
-		return result;
+		return getSnapshot().getParents(clazz);
 	}
 
 	/**
@@ -368,20 +277,7 @@ public class OntologyIndex {
 	 */
 	// TODO add all synonyms of the children to the result
 	public List<OntClass> getChildren(OntClass clazz) {
-		if (clazz == null)
-			return Collections.emptyList();
-		
-		List<OntClass> result = new ArrayList<OntClass>();
-
-		ExtendedIterator childIter = clazz.listSubClasses(true);
-		while(childIter.hasNext()) {
-			OntClass child = (OntClass) childIter.next();
-			if (!child.hasLiteral(Jura.invisible, true)) {
-				result.add(child);
-			}
-		}
-
-		return result;
+		return getSnapshot().getChildren(clazz);
 	}
 
 	/**
@@ -395,43 +291,64 @@ public class OntologyIndex {
 	}
 
 	/**
-	 * Load statements from an input stream to the model.
+	 * Load statements from an input stream to the model. The statements are
+	 * added to the ones already loaded. The combined model is compiled into a
+	 * new snapshot which replaces the current one when it is complete.
 	 * 
 	 * @param is
 	 *            input stream to read from
 	 */
-	public void load(InputStream is) {
-		model.read(is, "");
-		createIndex();
+	public synchronized void load(InputStream is) {
+		OntModel m = createModel();
+		OntologySnapshot current = getSnapshot();
+		if (current.isModelReleased()) {
+			log.warn("The ontology model has been released, previously loaded statements are discarded");
+		} else {
+			m.add(current.getModel());
+		}
+		m.read(is, "");
+		publish(compile(m));
 	}
 
 	/**
-	 * Adds a new entry to all indexes, e.g., label index, prefix index. The
-	 * labels are retrieved from the URI.
+	 * Replace the ontology by the statements read from an input stream. The
+	 * new model and its indexes are built off to the side; readers keep
+	 * working on the previous snapshot until the new one is published.
+	 * 
+	 * @param is
+	 *            input stream to read from
 	 */
-	protected void createIndex() {
-		log.debug("Creating index");
-		if (model.size() == 0)
-			return;
-		
-		ExtendedIterator it = model.listClasses();
-		OntClass c;
-		while (it.hasNext()) {
-			c = (OntClass)it.next();
-			
-			if (c.hasLiteral(Jura.invisible, true))
-				continue;
-			
-			if (!c.isAnon()) {
-				List<String> labels = OntologyUtils.getLabels(c);
-				// TODO maybe we should use the GermanAnalyzer at this place to have stop words removed
-				for (String label : labels) {
-					addToLabelIndex(stemmer.stem(label), c);
-					addToPrefixIndex(label);
-				}
-			}
-		}
-		log.debug("done");
+	public synchronized void reload(InputStream is) {
+		OntModel m = createModel();
+		m.read(is, "");
+		publish(compile(m));
+	}
+
+	/**
+	 * Compiles a snapshot for <code>m</code>. The model is released
+	 * afterwards if {@link Config#ONTOLOGY_RELEASE_MODEL} is set.
+	 */
+	protected OntologySnapshot compile(OntModel m) {
+		boolean release = Config.getBooleanAppProperty(Config.ONTOLOGY_RELEASE_MODEL);
+		return OntologySnapshot.compile(m, stemmer, release);
+	}
+
+	/**
+	 * Makes <code>s</code> the current snapshot.
+	 * 
+	 * @param s
+	 *            a completely compiled snapshot
+	 */
+	protected void publish(OntologySnapshot s) {
+		snapshot.set(s);
+		log.debug("** Published ontology snapshot with " + s.getConceptCount() + " concepts, stemmer: " + stemmer);
+	}
+
+	/**
+	 * @return a new, empty ontology model
+	 */
+	protected OntModel createModel() {
+		return ModelFactory.createOntologyModel(OntModelSpec.OWL_LITE_MEM);
 	}
 
 	/**
@@ -452,41 +369,7 @@ public class OntologyIndex {
 	 * @return true iff there is a prefix consisting of
 	 */
 	public boolean isPrefix(Collection<String> fragments) {
-		List<String> stems = new ArrayList<String>();
-		for (String f : fragments) {
-			stems.add(stemmer.stem(f));
-		}
-		return prefixIdx.contains(implode(stems));
-	}
-
-	/**
-	 * Generates the prefixes of a term. If {@link #explode(String)} returns an
-	 * array f1..fn with n > 1 then all terms of the form implode(f1..fi) with
-	 * 1<=i<n are prefixes (see {@link #implode(Collection)}.
-	 * 
-	 * @param term
-	 *            a term
-	 * @return the prefix corresponding to a term.
-	 */
-	protected List<String> generatePrefixes(String term) {
-		if (term == null)
-			throw new NullPointerException("Parameter term must not be null");
-		
-		// TODO normalization of the term, e.g., remove all punctuation, '-', etc.
-		String[] fragments = explode(term);
-		if (fragments.length <= 1)
-			return Collections.emptyList();
-		
-		List<String> result = new ArrayList<String>();
-		String prefix = stemmer.stem(fragments[0]);
-		result.add(prefix);
-			
-		for (int i = 1; i < fragments.length - 1; i++) {
-			prefix = implode(prefix, stemmer.stem(fragments[i]));
-			result.add(prefix);
-		}
-		
-		return result;
+		return getSnapshot().isPrefix(fragments);
 	}
 
 	/**
@@ -498,99 +381,21 @@ public class OntologyIndex {
 	 * @return a list of fragments
 	 */
 	public String[] explode(String term) {
-		return StringUtils.split(term);
-	}
-
-	/**
-	 * Concatenate two fragments in the context of a prefix index.
-	 * 
-	 * @param f1
-	 *            first fragment
-	 * @param f2
-	 *            second fragment
-	 * @return concatenation
-	 */
-	protected String implode(String f1, String f2) {
-		return f1 + PREFIX_SEPARATOR + f2;
-	}
-
-	/**
-	 * Concatenate fragments in the context of a prefix index.
-	 * 
-	 * @param c
-	 *            collection of fragments
-	 * @return concatenation
-	 */
-	protected String implode(Collection<String> c) {
-		return StringUtils.join(c, PREFIX_SEPARATOR);
-	}
-	
-	/**
-	 * Convenience method for handling the array of the label index. Adds an
-	 * entry into the index. The key is taken as given.
-	 * 
-	 * @param key
-	 *            a label
-	 * @param clazz
-	 *            the URI of a concept
-	 */
-	protected void addToLabelIndex(String key, OntClass clazz) {
-		Set<OntClass> value = new HashSet<OntClass>();
-		if (labelIdx.containsKey(key)) {
-			value.addAll(Arrays.asList(labelIdx.get(key)));
-		}
-		value.add(clazz);
-		OntClass[] s = new OntClass[value.size()];
-		value.toArray(s);
-		
-		labelIdx.put(key, s);
-		log.trace("** Updated index with " + key + " => " + value);
-	}
-	
-	/**
-	 * Adds all prefixes of term to the prefix index.
-	 * 
-	 * @param term
-	 *            a label
-	 */
-	protected void addToPrefixIndex(String term) {
-		List<String> prefixes = generatePrefixes(term);
-		if (!prefixes.isEmpty()) {
-			prefixIdx.addAll(prefixes);
-			log.trace("** Updated prefix with " + prefixes);
-		}
-	}
-
-	/**
-	 * Convenience method for handling the array of the label index.Look up key
-	 * in the index and return corresponding URIs. Never returns
-	 * <code>null</code>.
-	 * 
-	 * @param key
-	 *            key to be looked up
-	 * @return list of corresponding URIs
-	 */
-	protected List<OntClass> getFromLabelIndex(String key) {
-		if (labelIdx.containsKey(key))
-			return Arrays.asList(labelIdx.get(key));
-		else
-			return Collections.emptyList(); 
+		return OntologySnapshot.explode(term);
 	}
 	
 	/**
 	 * Clear ontology model, indexes, and all other stuff.
 	 */
-	public void reset() {
-		model.removeAll();
-		labelIdx.clear();
-		prefixIdx.clear();
+	public synchronized void reset() {
+		publish(OntologySnapshot.compile(createModel(), stemmer, false));
 	}
 	
 	public Map<String, OntClass[]> getLabelIndex() {
-		return labelIdx;
+		return getSnapshot().getLabelIndex();
 	}
 	
 	public Set<String> getPrefixIndex() {
-		return prefixIdx;
+		return getSnapshot().getPrefixIndex();
 	}
 }
@@ -0,0 +1,742 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.ontology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.de.Stemmer;
+
+import com.hp.hpl.jena.ontology.OntClass;
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+import de.csw.ontology.util.OntologyUtils;
+import de.csw.ontology.vocabular.Jura;
+import de.csw.util.Config;
+
+/**
+ * An immutable, compiled view of an ontology: the Jena model together with
+ * the concept tables and the {@link ConceptTrie} of labels derived from it. A snapshot is built
+ * completely by {@link #compile(OntModel, Stemmer, boolean)} before it is
+ * handed out and is never modified afterwards, so it can be read by any
+ * number of threads without locking. {@link OntologyIndex} publishes new
+ * snapshots by swapping a single reference.
+ * <p>
+ * Every visible, named concept gets a dense integer id at compile time. Its
+ * URI, its labels and its synonyms, children and parents (as ids, in the
+ * order Jena reports them) are stored in plain arrays, so looking up similar
+ * concepts does not touch the Jena model at all. If the model is released
+ * (see {@link Config#ONTOLOGY_RELEASE_MODEL}) only these tables are kept and
+ * the methods working with {@link OntClass} objects are not available.
+ * </p>
+ * 
+ * @author rheese
+ * 
+ */
+public final class OntologySnapshot {
+	static final Logger log = Logger.getLogger(OntologySnapshot.class);
+
+	private static final int[] NO_CONCEPTS = new int[0];
+
+	/** source of the snapshot versions */
+	private static final AtomicLong versions = new AtomicLong();
+
+	/** increases with every compiled snapshot */
+	private final long version;
+
+	/** hash of the concepts, their labels and relations and the link settings; see {@link #getFingerprint()} */
+	private final long fingerprint;
+
+	/** Stemmer that was used to build the indexes; lookups have to use the same one */
+	private final Stemmer stemmer;
+
+	/** Trie of the stemmed label fragments; its final states carry the concept ids. */
+	private final ConceptTrie trie;
+
+	/** Jena model of the ontology, <code>null</code> if it has been released. */
+	private final OntModel model;
+
+	/** concept id => Jena class, <code>null</code> if the model has been released */
+	private final OntClass[] classes;
+
+	/** concept id => URI */
+	private final String[] uris;
+
+	/** concept id => labels in all configured languages */
+	private final List<List<String>> labels;
+
+	/** concept id => stemmed labels, in the same order as the labels */
+	private final List<List<String>> labelStems;
+
+	/** concept id => ids of its synonyms, children and parents */
+	private final int[][] synonyms;
+	private final int[][] children;
+	private final int[][] parents;
+
+	/**
+	 * concept id => its anonymous subclasses, which have no id;
+	 * <code>null</code> if the model has been released
+	 */
+	private final OntClass[][] anonymousChildren;
+
+	/** URI => concept id */
+	private final Map<String, Integer> uriIdx;
+
+	/** rendered wiki links of the labels, see {@link #getConceptLinks()} */
+	private final ConceptLinks links;
+
+	private OntologySnapshot(Builder b, boolean releaseModel) {
+		int n = b.concepts.size();
+		this.version = versions.incrementAndGet();
+		this.stemmer = b.stemmer;
+		this.trie = b.trie.build();
+		this.uriIdx = Collections.unmodifiableMap(b.uriIdx);
+		this.labels = Collections.unmodifiableList(b.labels);
+		this.labelStems = Collections.unmodifiableList(b.labelStems);
+		this.synonyms = b.synonyms.toArray(new int[n][]);
+		this.children = b.children.toArray(new int[n][]);
+		this.parents = b.parents.toArray(new int[n][]);
+		this.uris = new String[n];
+		for (int id = 0; id < n; id++) {
+			uris[id] = b.concepts.get(id).getURI();
+		}
+		String searchUrl = Config.getAppProperty(Config.LUCENE_URL);
+		int maxSearchTerms = Config.getIntAppProperty(Config.LUCENE_MAXSEARCHTERMS);
+		this.fingerprint = computeFingerprint(searchUrl, maxSearchTerms);
+		this.links = new ConceptLinks(this, searchUrl, maxSearchTerms);
+
+		if (releaseModel) {
+			this.model = null;
+			this.classes = null;
+			this.anonymousChildren = null;
+		} else {
+			this.model = b.model;
+			this.classes = b.concepts.toArray(new OntClass[n]);
+			this.anonymousChildren = b.anonymousChildren.toArray(new OntClass[n][]);
+		}
+	}
+
+	/**
+	 * Builds the concept tables and the label trie for all visible, named
+	 * classes of <code>model</code>. The model is owned by the
+	 * snapshot afterwards and must not be changed by the caller anymore.
+	 * 
+	 * @param model
+	 *            a completely loaded ontology model
+	 * @param stemmer
+	 *            stemmer used to compute the index keys
+	 * @param releaseModel
+	 *            if <code>true</code> the snapshot does not keep a reference
+	 *            to the model, so it can be garbage collected
+	 * @return a new snapshot
+	 */
+	static OntologySnapshot compile(OntModel model, Stemmer stemmer, boolean releaseModel) {
+		log.debug("Creating index");
+		Builder b = new Builder(model, stemmer);
+
+		if (model.size() > 0) {
+			ExtendedIterator it = model.listClasses();
+			OntClass c;
+			while (it.hasNext()) {
+				c = (OntClass)it.next();
+
+				if (!isVisible(c))
+					continue;
+
+				int id = b.idOf(c);
+				// TODO maybe we should use the GermanAnalyzer at this place to have stop words removed
+				for (String label : OntologyUtils.getLabels(c, b.languages)) {
+					b.addLabel(label, id);
+				}
+			}
+		}
+		b.resolveNeighbours();
+
+		OntologySnapshot s = new OntologySnapshot(b, releaseModel);
+		log.debug("done, " + s.getConceptCount() + " concepts");
+		return s;
+	}
+
+	/**
+	 * @return the version of the snapshot. Snapshots compiled later have
+	 *         higher versions, so results derived from a snapshot can be
+	 *         keyed by it.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return a hash of the concepts, their labels and relations and of the
+	 *         settings of the rendered links. Unlike the version it is the
+	 *         same for the same ontology and settings, even across restarts,
+	 *         so it can be persisted with derived results.
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Sums up a hash per concept, so the fingerprint does not depend on the
+	 * order in which the concepts got their ids. The link settings are added,
+	 * as the enhanced texts depend on them as well.
+	 */
+	private long computeFingerprint(String searchUrl, int maxSearchTerms) {
+		long sum = 31L * String.valueOf(searchUrl).hashCode() + maxSearchTerms;
+		for (int id = 0; id < uris.length; id++) {
+			long h = uris[id].hashCode();
+			for (String label : labels.get(id))
+				h += 31L * label.hashCode();
+			for (int s : synonyms[id])
+				h += 37L * uris[s].hashCode();
+			for (int c : children[id])
+				h += 41L * uris[c].hashCode();
+			for (int p : parents[id])
+				h += 43L * uris[p].hashCode();
+			// mix, so that the concepts do not cancel each other out
+			h *= 0x9E3779B97F4A7C15L;
+			sum += h ^ (h >>> 32);
+		}
+		return sum;
+	}
+
+	/**
+	 * @return true iff the class is named and not marked as invisible
+	 */
+	private static boolean isVisible(OntClass c) {
+		return !c.isAnon() && !c.hasLiteral(Jura.invisible, true);
+	}
+
+	/**
+	 * @return the ontology model. It is shared with all readers of this
+	 *         snapshot and must be treated as read-only.
+	 * @throws IllegalStateException
+	 *             if the model has been released
+	 */
+	public OntModel getModel() {
+		checkModel();
+		return model;
+	}
+
+	/**
+	 * @return true iff the Jena model has been released after compiling the
+	 *         concept tables
+	 */
+	public boolean isModelReleased() {
+		return model == null;
+	}
+
+	/**
+	 * @return the stemmer used in the index
+	 */
+	public Stemmer getStemmer() {
+		return stemmer;
+	}
+
+	/**
+	 * @return the trie of stemmed labels. Token streams that are already
+	 *         stemmed with {@link #getStemmer()} can walk it directly.
+	 */
+	public ConceptTrie getConceptTrie() {
+		return trie;
+	}
+
+	/**
+	 * @return the links to the search page for all labels, keyed by the final
+	 *         states of {@link #getConceptTrie()}
+	 */
+	public ConceptLinks getConceptLinks() {
+		return links;
+	}
+
+	/**
+	 * @return the number of concepts; valid ids are
+	 *         <code>0..getConceptCount()-1</code>
+	 */
+	public int getConceptCount() {
+		return uris.length;
+	}
+
+	/**
+	 * @param uri
+	 *            URI of a concept
+	 * @return the id of the concept or <code>-1</code> if it is unknown or
+	 *         invisible
+	 */
+	public int getConceptId(String uri) {
+		Integer id = uriIdx.get(uri);
+		return id != null ? id.intValue() : -1;
+	}
+
+	/**
+	 * @param id
+	 *            a concept id
+	 * @return the URI of the concept
+	 */
+	public String getConceptUri(int id) {
+		return uris[id];
+	}
+
+	/**
+	 * @param id
+	 *            a concept id
+	 * @return the labels of the concept in all configured languages; the
+	 *         list is read-only
+	 */
+	public List<String> getConceptLabels(int id) {
+		return labels.get(id);
+	}
+
+	/**
+	 * @param id
+	 *            a concept id
+	 * @return the stemmed labels of the concept, in the same order as
+	 *         {@link #getConceptLabels(int)}; the list is read-only
+	 */
+	public List<String> getConceptLabelStems(int id) {
+		return labelStems.get(id);
+	}
+
+	/**
+	 * Look up <code>term</code> and return the ids of the matching and
+	 * similar concepts. The order is exact matches, synonyms, children,
+	 * parents. The result contains no duplicates and at most
+	 * <code>limit</code> ids. No Jena calls are made.
+	 * 
+	 * @param term
+	 *            term to be looked up
+	 * @param limit
+	 *            maximum number of concepts in the result
+	 * @return ids of the similar concepts
+	 */
+	public int[] getSimilarConcepts(String term, int limit) {
+		return getSimilarConcepts(getExactConcepts(term), limit);
+	}
+
+	/**
+	 * Same as {@link #getSimilarConcepts(String, int)} for concepts that have
+	 * already been looked up.
+	 * 
+	 * @param exact
+	 *            ids of the exactly matching concepts
+	 * @param limit
+	 *            maximum number of concepts in the result
+	 * @return ids of the similar concepts
+	 */
+	public int[] getSimilarConcepts(int[] exact, int limit) {
+		if (exact.length >= limit)
+			return Arrays.copyOf(exact, limit);
+
+		int capacity = exact.length;
+		for (int id : exact)
+			capacity += synonyms[id].length + children[id].length + parents[id].length;
+		int[] result = new int[Math.min(capacity, limit)];
+		int size = 0;
+		for (int id : exact)
+			size = addNew(result, size, id);
+		size = addNeighbours(result, size, exact, synonyms);
+		size = addNeighbours(result, size, exact, children);
+		size = addNeighbours(result, size, exact, parents);
+
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Appends the neighbours of all <code>concepts</code> in the given table
+	 * to <code>result</code> until it is full.
+	 * 
+	 * @return the new size of the result
+	 */
+	private static int addNeighbours(int[] result, int size, int[] concepts, int[][] table) {
+		for (int c : concepts) {
+			for (int n : table[c]) {
+				if (size == result.length)
+					return size;
+				size = addNew(result, size, n);
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Appends <code>id</code> to <code>result</code> if it is not contained
+	 * yet. Neighbourhoods are small, a linear scan is fine.
+	 * 
+	 * @return the new size of the result
+	 */
+	private static int addNew(int[] result, int size, int id) {
+		for (int i = 0; i < size; i++) {
+			if (result[i] == id)
+				return size;
+		}
+		result[size] = id;
+		return size + 1;
+	}
+
+	/**
+	 * @param term
+	 *            term to be looked up
+	 * @return ids of the exactly matching concepts; must not be modified
+	 */
+	public int[] getExactConcepts(String term) {
+		return trie.getConcepts(walk(Arrays.asList(explode(term))));
+	}
+
+	/**
+	 * Collects the labels of the given concepts in order.
+	 * 
+	 * @param ids
+	 *            concept ids
+	 * @return labels of the concepts
+	 */
+	public List<String> getLabels(int[] ids) {
+		List<String> result = new ArrayList<String>();
+		for (int id : ids) {
+			result.addAll(labels.get(id));
+		}
+		return result;
+	}
+
+	/**
+	 * @see OntologyIndex#getSimilarMatches(String, int)
+	 */
+	public List<OntClass> getSimilarMatches(String term, int limit) {
+		int[] exact = getExactConcepts(term);
+		List<OntClass> result = toClasses(getSimilarConcepts(exact, limit));
+		// anonymous children have no id, they fill up the remaining places
+		for (int id : exact) {
+			for (OntClass c : anonymousChildren[id]) {
+				if (result.size() >= limit)
+					return result;
+				if (!result.contains(c))
+					result.add(c);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @see OntologyIndex#getSimilarMatches(String)
+	 */
+	public List<OntClass> getSimilarMatches(String term) {
+		return getSimilarMatches(term, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @see OntologyIndex#getSimilarMatchLabels(String)
+	 */
+	public List<String> getSimilarMatchLabels(String term) {
+		return getSimilarMatchLabels(term, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @see OntologyIndex#getSimilarMatchLabels(String, int)
+	 */
+	public List<String> getSimilarMatchLabels(String term, int limit) {
+		return getLabels(getSimilarConcepts(term, limit));
+	}
+
+	/**
+	 * @see OntologyIndex#hasExactMatches(String)
+	 */
+	public boolean hasExactMatches(String term) {
+		return getExactConcepts(term).length > 0;
+	}
+
+	/**
+	 * @see OntologyIndex#getExactMatches(String)
+	 */
+	public List<OntClass> getExactMatches(String term) {
+		return toClasses(getExactConcepts(term));
+	}
+
+	/**
+	 * @see OntologyIndex#getExactMatchLabels(String)
+	 */
+	public List<String> getExactMatchLabels(String term) {
+		return getLabels(getExactConcepts(term));
+	}
+
+	/**
+	 * @see OntologyIndex#getFirstExactMatch(String)
+	 */
+	public OntClass getFirstExactMatch(String term) {
+		int[] matches = getExactConcepts(term);
+		checkModel();
+		return matches.length > 0 ? classes[matches[0]] : null;
+	}
+
+	/**
+	 * @see OntologyIndex#getSynonyms(OntClass)
+	 */
+	public List<OntClass> getSynonyms(OntClass clazz) {
+		return getNeighbours(clazz, synonyms);
+	}
+
+	/**
+	 * @see OntologyIndex#getParents(OntClass)
+	 */
+	// TODO add all synonyms of the parents to the result
+	public List<OntClass> getParents(OntClass clazz) {
+		return getNeighbours(clazz, parents);
+	}
+
+	/**
+	 * @see OntologyIndex#getChildren(OntClass)
+	 */
+	// TODO add all synonyms of the children to the result
+	public List<OntClass> getChildren(OntClass clazz) {
+		List<OntClass> result = getNeighbours(clazz, children);
+		if (clazz == null)
+			return result;
+		int id = getConceptId(clazz.getURI());
+		if (id < 0 || anonymousChildren[id].length == 0)
+			return result;
+		result = new ArrayList<OntClass>(result);
+		result.addAll(Arrays.asList(anonymousChildren[id]));
+		return result;
+	}
+
+	/**
+	 * Looks up the neighbours of a class in one of the concept tables.
+	 */
+	private List<OntClass> getNeighbours(OntClass clazz, int[][] table) {
+		if (clazz == null)
+			return Collections.emptyList();
+
+		int id = getConceptId(clazz.getURI());
+		if (id < 0)
+			return Collections.emptyList();
+
+		return toClasses(table[id]);
+	}
+
+	/**
+	 * Maps concept ids to the classes of the model.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the model has been released
+	 */
+	private List<OntClass> toClasses(int[] ids) {
+		checkModel();
+		List<OntClass> result = new ArrayList<OntClass>(ids.length);
+		for (int id : ids) {
+			result.add(classes[id]);
+		}
+		return result;
+	}
+
+	private void checkModel() {
+		if (model == null)
+			throw new IllegalStateException("The ontology model has been released, only concept ids are available");
+	}
+
+	/**
+	 * Tests, if the concatenation of the given fragments is a proper prefix
+	 * of a label. The order is preserved.
+	 * 
+	 * @param fragments
+	 *            a list of terms
+	 * @return true iff there is a label starting with the fragments
+	 */
+	public boolean isPrefix(Collection<String> fragments) {
+		return trie.hasArcs(walk(fragments));
+	}
+
+	/**
+	 * Stems the fragments and follows them through the trie.
+	 * 
+	 * @return the state reached or {@link ConceptTrie#NONE}
+	 */
+	private int walk(Collection<String> fragments) {
+		int state = fragments.isEmpty() ? ConceptTrie.NONE : ConceptTrie.ROOT;
+		for (String f : fragments) {
+			state = trie.step(state, stemmer.stem(f));
+			if (state == ConceptTrie.NONE)
+				break;
+		}
+		return state;
+	}
+
+	/**
+	 * Builds a map from the stemmed labels to the classes. Intended for
+	 * diagnostics; it is computed on every call.
+	 * 
+	 * @return the label index
+	 */
+	public Map<String, OntClass[]> getLabelIndex() {
+		Map<String, OntClass[]> result = new HashMap<String, OntClass[]>();
+		for (int state = 0; state < trie.size(); state++) {
+			if (trie.isFinal(state)) {
+				List<OntClass> c = toClasses(trie.getConcepts(state));
+				result.put(trie.getPath(state), c.toArray(new OntClass[c.size()]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Collects all proper prefixes of multi-word labels. Intended for
+	 * diagnostics; it is computed on every call.
+	 * 
+	 * @return the prefixes, stemmed and joined by
+	 *         {@link OntologyIndex#PREFIX_SEPARATOR}
+	 */
+	public Set<String> getPrefixIndex() {
+		Set<String> result = new HashSet<String>();
+		for (int state = 0; state < trie.size(); state++) {
+			if (state != ConceptTrie.ROOT && trie.hasArcs(state)) {
+				result.add(trie.getPath(state));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Split a string into fragment (at whitespaces) in the context of a prefix
+	 * index. Not stemmed.
+	 * 
+	 * @param term
+	 *            a term
+	 * @return a list of fragments
+	 */
+	static String[] explode(String term) {
+		return StringUtils.split(term);
+	}
+
+	/**
+	 * Mutable state while a snapshot is compiled. Never escapes
+	 * {@link OntologySnapshot#compile(OntModel, Stemmer, boolean)}.
+	 */
+	private static final class Builder {
+		final OntModel model;
+		final Stemmer stemmer;
+		final List<String> languages = Config.getListProperty(Config.LANGUAGES);
+		final ConceptTrie.Builder trie = new ConceptTrie.Builder();
+		final Map<String, Integer> uriIdx = new HashMap<String, Integer>();
+		final List<OntClass> concepts = new ArrayList<OntClass>();
+		final List<List<String>> labels = new ArrayList<List<String>>();
+		final List<List<String>> labelStems = new ArrayList<List<String>>();
+		final List<int[]> synonyms = new ArrayList<int[]>();
+		final List<int[]> children = new ArrayList<int[]>();
+		final List<int[]> parents = new ArrayList<int[]>();
+		final List<OntClass[]> anonymousChildren = new ArrayList<OntClass[]>();
+
+		Builder(OntModel model, Stemmer stemmer) {
+			this.model = model;
+			this.stemmer = stemmer;
+		}
+
+		/**
+		 * @return the id of a visible named class, a new one if the class
+		 *         has not been seen before
+		 */
+		int idOf(OntClass c) {
+			Integer id = uriIdx.get(c.getURI());
+			if (id == null) {
+				id = Integer.valueOf(concepts.size());
+				uriIdx.put(c.getURI(), id);
+				concepts.add(c);
+			}
+			return id.intValue();
+		}
+
+		/**
+		 * Reads labels, synonyms, children and parents of every concept from
+		 * the model. Neighbours that have not been seen yet get new ids and
+		 * are resolved in turn.
+		 */
+		void resolveNeighbours() {
+			for (int id = 0; id < concepts.size(); id++) {
+				OntClass c = concepts.get(id);
+				List<String> l = OntologyUtils.getLabels(c, languages);
+				List<String> stems = new ArrayList<String>(l.size());
+				for (String label : l) {
+					stems.add(stemmer.stem(label));
+				}
+				labels.add(Collections.unmodifiableList(l));
+				labelStems.add(Collections.unmodifiableList(stems));
+				// the one way
+				synonyms.add(toIds(c.listEquivalentClasses(), null));
+				// like the model, the children include anonymous classes
+				List<OntClass> anonymous = new ArrayList<OntClass>();
+				children.add(toIds(c.listSubClasses(true), anonymous));
+				anonymousChildren.add(anonymous.toArray(new OntClass[anonymous.size()]));
+				parents.add(toIds(c.listSuperClasses(true), null));
+			}
+		}
+
+		/**
+		 * Collects the ids of the visible named classes of an iterator. The
+		 * order is kept, duplicates are removed.
+		 * 
+		 * @param anonymous
+		 *            receives the anonymous classes that are not marked as
+		 *            invisible, if not <code>null</code>
+		 */
+		private int[] toIds(ExtendedIterator it, List<OntClass> anonymous) {
+			int[] ids = new int[4];
+			int size = 0;
+			while (it.hasNext()) {
+				OntClass c = (OntClass)it.next();
+				if (c.isAnon() && anonymous != null && !c.hasLiteral(Jura.invisible, true))
+					anonymous.add(c);
+				if (!isVisible(c))
+					continue;
+				if (size == ids.length)
+					ids = Arrays.copyOf(ids, size * 2);
+				size = addNew(ids, size, idOf(c));
+			}
+			return size == 0 ? NO_CONCEPTS : Arrays.copyOf(ids, size);
+		}
+
+		/**
+		 * Adds the stemmed fragments of a label to the trie.
+		 */
+		void addLabel(String label, int id) {
+			// TODO normalization of the term, e.g., remove all punctuation, '-', etc.
+			String[] fragments = explode(label);
+			if (fragments.length == 0)
+				return;
+			for (int i = 0; i < fragments.length; i++) {
+				fragments[i] = stemmer.stem(fragments[i]);
+			}
+			trie.add(fragments, id);
+			log.trace("** Updated index with " + Arrays.toString(fragments) + " => " + id);
+		}
+	}
+}
@@ -25,6 +25,9 @@
  ******************************************************************************/
 package de.csw.ontology;
 
+import java.io.IOException;
+import java.io.Reader;
+
 public interface TextEnhancer {
 
 	/**
@@ -35,4 +38,18 @@ public interface TextEnhancer {
 	 * @return annotated text
 	 */
 	public String enhance(String text);
+
+	/**
+	 * Adds annotations to a text read from <code>in</code> and appends the
+	 * result to <code>out</code>. Only a small part of the text is held in
+	 * memory at any time, so large texts should use this method.
+	 * 
+	 * @param in
+	 *            text to be annotated
+	 * @param out
+	 *            the annotated text is appended to it
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+	public void enhance(Reader in, Appendable out) throws IOException;
 }
@@ -25,33 +25,47 @@
  ******************************************************************************/
 package de.csw.ontology;
 
-import java.io.BufferedReader;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.de.CSWGermanAnalyzer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
-import org.jfree.util.Log;
 
+import de.csw.lucene.ConceptAttribute;
 import de.csw.lucene.ConceptFilter;
-import de.csw.util.Config;
-import de.csw.util.URLEncoder;
+import de.csw.lucene.WikiTokenizer;
 
 /**
  * Uses background knowledge to enhance the text.
+ * <p>
+ * The enhancer is re-entrant: all state of a call is kept in an
+ * {@link EnhancementContext}, so a single instance can be shared by all
+ * request threads.
+ * </p>
+ * <p>
+ * If the enhancer has a section executor, large texts are split
+ * into sections at blank lines and headings outside of links and macros,
+ * which are enhanced in parallel and joined in order. Labels are not matched
+ * across section boundaries.
+ * </p>
  * 
  * @author rheese
  * 
@@ -59,16 +73,48 @@ import de.csw.util.URLEncoder;
 public class XWikiTextEnhancer implements TextEnhancer {
 	static final Logger log = Logger.getLogger(XWikiTextEnhancer.class);
 	
-	static final int MAX_SIMILAR_CONCEPTS = Config.getIntAppProperty(Config.LUCENE_MAXSEARCHTERMS);
-	static final String LUCENE_URL = Config.getAppProperty(Config.LUCENE_URL);
-	
-	OntologyIndex index;
+	/** shared by all enhancers; the analysis chain is reused per thread */
+	static final CSWGermanAnalyzer analyzer = new CSWGermanAnalyzer();
+
+	/** the deadline of a call is checked every 64 tokens */
+	private static final int DEADLINE_CHECK_MASK = 63;
+
+	/** enhances the sections of large texts, <code>null</code> if parallel enhancement is disabled */
+	private final ExecutorService sectionExecutor;
+
+	/** texts with at least this many chars are enhanced in sections */
+	private final int parallelThreshold;
+
+	/** number of threads of the section executor */
+	private final int parallelThreads;
 	
-	/** index for storing the positions of links in a text (start position, end position) */
-	TreeMap<Integer, Integer> linkIndex = new TreeMap<Integer, Integer>();
+	final OntologyIndex index;
 	
+	/**
+	 * Creates an enhancer that enhances all texts in the calling thread.
+	 */
 	public XWikiTextEnhancer() {
+		this(null, 0, 1);
+	}
+
+	/**
+	 * Creates an enhancer that enhances large texts in sections in parallel.
+	 * The executor is owned by the caller, which shuts it down.
+	 * 
+	 * @param sectionExecutor
+	 *            runs the sections, <code>null</code> to enhance all texts in
+	 *            the calling thread
+	 * @param parallelThreshold
+	 *            texts with at least this many chars are enhanced in sections
+	 * @param parallelThreads
+	 *            number of threads of the executor
+	 * @see #createSectionExecutor(int)
+	 */
+	public XWikiTextEnhancer(ExecutorService sectionExecutor, int parallelThreshold, int parallelThreads) {
 		index = OntologyIndex.get();
+		this.sectionExecutor = parallelThreshold > 0 ? sectionExecutor : null;
+		this.parallelThreshold = parallelThreshold;
+		this.parallelThreads = Math.max(1, parallelThreads);
 	}
 
 	/**
@@ -76,140 +122,388 @@ public class XWikiTextEnhancer implements TextEnhancer {
 	 * system. The search terms are related to the annotated phrase.
 	 */
 	public String enhance(String text) {
-		CSWGermanAnalyzer ga = new CSWGermanAnalyzer();
-		TokenStream ts = null;
-		StringBuilder result = new StringBuilder();
-		
-		initializeLinkIndex(text);
+		return enhance(text, index.getSnapshot());
+	}
+
+	/**
+	 * Same as {@link #enhance(String)}, using a given version of the ontology.
+	 * 
+	 * @param text
+	 *            text to be annotated
+	 * @param snapshot
+	 *            the ontology snapshot all lookups of this call use
+	 * @return annotated text
+	 */
+	public String enhance(String text, OntologySnapshot snapshot) {
+		return enhance(text, snapshot, EnhancementContext.NO_DEADLINE);
+	}
+
+	/**
+	 * Same as {@link #enhance(String, OntologySnapshot)}, giving up once a
+	 * deadline has passed. The deadline is checked between tokens.
+	 * 
+	 * @param text
+	 *            text to be annotated
+	 * @param snapshot
+	 *            the ontology snapshot all lookups of this call use
+	 * @param deadline
+	 *            value of {@link System#nanoTime()} after which the call is
+	 *            given up, or {@link EnhancementContext#NO_DEADLINE}
+	 * @return annotated text, <code>null</code> if the deadline has passed
+	 */
+	public String enhance(String text, OntologySnapshot snapshot, long deadline) {
+		if (sectionExecutor != null && text.length() >= parallelThreshold)
+			return enhanceSections(text, snapshot, deadline);
+		return enhanceSection(text, snapshot, deadline);
+	}
+
+	/**
+	 * Splits the text into about two sections per thread and enhances them in
+	 * parallel. The calling thread enhances the first section itself.
+	 */
+	private String enhanceSections(String text, final OntologySnapshot snapshot, final long deadline) {
+		int target = text.length() / (2 * parallelThreads);
+		List<String> sections = new ArrayList<String>();
+		int start = 0;
+		for (int end = 0; end < text.length();) {
+			end = WikiTokenizer.nextBlock(text, end);
+			if (end - start >= target || end == text.length()) {
+				sections.add(text.substring(start, end));
+				start = end;
+			}
+		}
+		if (sections.size() < 2)
+			return enhanceSection(text, snapshot, deadline);
+
+		List<Future<String>> results = new ArrayList<Future<String>>(sections.size());
+		for (final String section : sections.subList(1, sections.size())) {
+			Future<String> result;
+			try {
+				result = sectionExecutor.submit(new Callable<String>() {
+					public String call() {
+						return enhanceSection(section, snapshot, deadline);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// the executor is shut down, e.g., while the plug-in is flushed
+				result = null;
+			}
+			results.add(result);
+		}
+
+		StringBuilder sb = new StringBuilder(text.length() + (text.length() >> 3));
+		String first = enhanceSection(sections.get(0), snapshot, deadline);
+		if (first == null)
+			return cancel(results);
+		sb.append(first);
+		for (int i = 0; i < results.size(); i++) {
+			String result = awaitSection(results.get(i), sections.get(i + 1), snapshot, deadline);
+			if (result == null)
+				return cancel(results);
+			sb.append(result);
+		}
+		if (log.isDebugEnabled())
+			log.debug("Enhanced " + text.length() + " chars in " + sections.size() + " sections");
+		return sb.toString();
+	}
+
+	/**
+	 * @return the enhanced section, enhanced by the calling thread if the
+	 *         parallel task was rejected or failed or the caller got
+	 *         interrupted; <code>null</code> if the deadline has passed
+	 */
+	private String awaitSection(Future<String> result, String section, OntologySnapshot snapshot, long deadline) {
+		if (result == null)
+			return enhanceSection(section, snapshot, deadline);
+		try {
+			if (deadline == EnhancementContext.NO_DEADLINE)
+				return result.get();
+			return result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.cancel(false);
+		} catch (ExecutionException e) {
+			log.error("Error while enhancing a section in parallel", e.getCause());
+		}
+		return enhanceSection(section, snapshot, deadline);
+	}
+
+	/**
+	 * Cancels the sections still running after the deadline has passed.
+	 * 
+	 * @return <code>null</code>
+	 */
+	private static String cancel(List<Future<String>> results) {
+		for (Future<String> result : results) {
+			if (result != null)
+				result.cancel(true);
+		}
+		return null;
+	}
+
+	/**
+	 * Enhances a text in the calling thread.
+	 * 
+	 * @return the annotated text, <code>null</code> if the deadline has
+	 *         passed
+	 */
+	private String enhanceSection(String text, OntologySnapshot snapshot, long deadline) {
+		// annotations make the text grow a bit
+		StringBuilder result = new StringBuilder(text.length() + (text.length() >> 3));
+		try {
+			enhance(new StringReader(text), result, new EnhancementContext(snapshot, deadline));
+		} catch (DeadlineExceededException e) {
+			return null;
+		} catch (IOException e) {
+			log.error("Error while processing the page content", e);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Streaming variant of {@link #enhance(String)}. Only the part of the text
+	 * between the last annotated token and the read position of the analyzer
+	 * is buffered.
+	 */
+	public void enhance(Reader in, Appendable out) throws IOException {
+		enhance(in, out, index.getSnapshot());
+	}
+
+	/**
+	 * Same as {@link #enhance(Reader, Appendable)}, using a given version of
+	 * the ontology.
+	 * 
+	 * @param in
+	 *            text to be annotated
+	 * @param out
+	 *            the annotated text is appended to it
+	 * @param snapshot
+	 *            the ontology snapshot all lookups of this call use
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+	public void enhance(Reader in, Appendable out, OntologySnapshot snapshot) throws IOException {
+		enhance(in, out, new EnhancementContext(snapshot));
+	}
+
+	/**
+	 * @throws DeadlineExceededException
+	 *             if the deadline of the context has passed
+	 */
+	private void enhance(Reader in, Appendable out, EnhancementContext context) throws IOException {
+		OntologySnapshot snapshot = context.getSnapshot();
+		RecordingReader text = new RecordingReader(in);
+		TokenStream ts = analyzer.tokenStream("", text, snapshot);
 		
 		try {
-			Reader r = new BufferedReader(new StringReader(text));
-			
-			ts = ga.tokenStream("",	 r);
-			
 			CharTermAttribute charTermAttribute = ts.addAttribute(CharTermAttribute.class);
 			OffsetAttribute offsetAttribute = ts.addAttribute(OffsetAttribute.class);
 			TypeAttribute typeAttribute = ts.addAttribute(TypeAttribute.class);
+			ConceptAttribute conceptAttribute = ts.addAttribute(ConceptAttribute.class);
+			ts.reset();
 			
-			String term;
 			int lastEndIndex = 0;
+			int tokens = 0;
 			
 			while(ts.incrementToken()) {
+				// reading the clock for every token would cost more than the lookups
+				if ((++tokens & DEADLINE_CHECK_MASK) == 0 && context.isExpired())
+					throw new DeadlineExceededException();
+				int start = offsetAttribute.startOffset();
+				int end = offsetAttribute.endOffset();
 			
-				result.append(text.substring(lastEndIndex, offsetAttribute.startOffset()));
-				term = String.copyValueOf(charTermAttribute.buffer(), 0, charTermAttribute.length());
+				text.copyTo(out, lastEndIndex, start);
 				
-				if (typeAttribute.type().equals(ConceptFilter.CONCEPT_TYPE) && isAnnotatable(offsetAttribute)) {
-					log.debug("Annotating concept: " + term);
-					annotateWithSearch(result, text.substring(offsetAttribute.startOffset(), offsetAttribute.endOffset()), term);
+				// the tokenizer skips links and macros, so every concept can be annotated
+				if (typeAttribute.type().equals(ConceptFilter.CONCEPT_TYPE)) {
+					if (log.isDebugEnabled()) {
+						log.debug("Annotating concept: " + charTermAttribute);
+					}
+					annotateWithSearch(out, text.subSequence(start, end), conceptAttribute.getState(), context);
 				} else {
-					result.append(text.substring(offsetAttribute.startOffset(), offsetAttribute.endOffset()));
+					text.copyTo(out, start, end);
 				}
 					
-				lastEndIndex = offsetAttribute.endOffset();
+				lastEndIndex = end;
+				text.release(lastEndIndex);
+			}
+			ts.end();
+			// the tokenizer has read the whole text, copy the rest
+			text.copyTo(out, lastEndIndex, text.length());
+		} finally {
+			// releases the reader; the components stay with the thread for the next text
+			try {
+				ts.close();
+			} catch (IOException e) {
+				log.warn("Could not close token stream", e);
 			}
-			result.append(text.subSequence(lastEndIndex, text.length()));
-		} catch (IOException e) {
-			Log.error("Error while processing the page content", e);
 		}
-		
-		ga.close();
-		return result.toString();
 	}
 	
-	private static final Pattern[] EXCLUDE_FROM_ENHANCEMENTS = {
-		Pattern.compile("\\[\\[[^\\]]*\\]\\]"),
-		Pattern.compile("<csw:linkset.*?>.*?</csw:linkset>"),
-		Pattern.compile("\\{\\{(velocity|groovy|html).*?\\}\\}.*?\\{\\{/\\1\\}\\}", Pattern.DOTALL)
-	};
-	
 	/**
-	 * Extract from text all phrases that are enclosed by '[' and ']' denoting
-	 * an xWiki link.
+	 * Finds the concepts of a text without changing it, for clients that
+	 * decorate the rendered page themselves. Only labels that would be
+	 * annotated by {@link #enhance(String)} are reported.
 	 * 
 	 * @param text
-	 *            text to parse
+	 *            the text
+	 * @param snapshot
+	 *            the ontology snapshot all lookups of this call use
+	 * @return the recognized concepts with their text and offsets
 	 */
-	protected void initializeLinkIndex(String text) {
-		if (text == null)
-			throw new NullPointerException("Parameter text must not be null");
-		
-		linkIndex.clear();
-
-		if (text.isEmpty()) return;
-		
-		for (Pattern pattern : EXCLUDE_FROM_ENHANCEMENTS) {
-			Matcher matcher = pattern.matcher(text);
-			while (matcher.find()) {
-				linkIndex.put(matcher.start(), matcher.end());
-			}	    
-		}
-	}
-
-	/**
-	 * Test if a token can be annotated by the {@link TextEnhancer}, e.g., if it
-	 * is not inside an exclude range (e.g. a wiki link).
-	 * 
-	 * @param offsetAttribute
-	 * 		the offset of the token into the text.
-	 * @return true iff the token can be annotated
-	 */
-	protected boolean isAnnotatable(OffsetAttribute offsetAttribute) {
-		final int tokenStart = offsetAttribute.startOffset();
-		Entry<Integer, Integer> containingRange = linkIndex.floorEntry(tokenStart);
-		
-		while (containingRange != null) {
-		    if (containingRange.getValue() >= tokenStart) {
-			return false;
-		    }
-		    containingRange = linkIndex.lowerEntry(containingRange.getKey());
+	public ConceptHits findConcepts(String text, OntologySnapshot snapshot) {
+		ConceptHits hits = new ConceptHits(snapshot, text);
+		ConceptLinks links = snapshot.getConceptLinks();
+		TokenStream ts = null;
+		try {
+			ts = analyzer.tokenStream("", new StringReader(text), snapshot);
+			OffsetAttribute offsetAttribute = ts.addAttribute(OffsetAttribute.class);
+			TypeAttribute typeAttribute = ts.addAttribute(TypeAttribute.class);
+			ConceptAttribute conceptAttribute = ts.addAttribute(ConceptAttribute.class);
+			ts.reset();
+			while (ts.incrementToken()) {
+				if (typeAttribute.type().equals(ConceptFilter.CONCEPT_TYPE) && links.getFragment(conceptAttribute.getState()) != null) {
+					hits.add(offsetAttribute.startOffset(), offsetAttribute.endOffset(), conceptAttribute.getState());
+				}
+			}
+			ts.end();
+		} catch (IOException e) {
+			log.error("Error while processing the page content", e);
+		} finally {
+			if (ts != null) {
+				try {
+					ts.close();
+				} catch (IOException e) {
+					log.warn("Could not close token stream", e);
+				}
+			}
 		}
-		return true;
+		return hits;
 	}
 
 	/**
 	 * Annotates the term by linking <code>term</code> to the search page of the
-	 * wiki.
+	 * wiki. The link target and title have been rendered when the snapshot was
+	 * compiled, see {@link ConceptLinks}.
 	 * 
-	 * @param sb 
-	 *            the string builder the result is appended to
+	 * @param out 
+	 *            the result is appended to it
 	 * @param term
 	 *            a term
-	 * @param stemBase 
-	 *            the base form of the term
+	 * @param state
+	 *            the final trie state of the label, as recognized by the
+	 *            {@link ConceptFilter}
+	 * @param context
+	 *            the context of the current call
+	 * @throws IOException
+	 *             if the result cannot be written
 	 */
-	protected void annotateWithSearch(StringBuilder sb, String term, String stemBase) {
-		List<String> matches = index.getSimilarMatchLabels(term, MAX_SIMILAR_CONCEPTS);
+	protected void annotateWithSearch(Appendable out, CharSequence term, int state, EnhancementContext context) throws IOException {
+		String link = context.getSnapshot().getConceptLinks().getFragment(state);
 
-		if (matches.isEmpty())
+		if (link == null)
 			return;
 
-		sb.append("[[").append(term);
-		sb.append(">>").append(getSearchURL(matches));
-		sb.append("||class=\"similarconcept\"");
-		Iterator<String> it = matches.listIterator();
-		sb.append(" title=\"Suche nach den verwandten Begriffen: ");
-		boolean afterFirstTerm = false;
-		while (it.hasNext()) {
-			String similarTerm = it.next();
-			if (!stemBase.equals(this.index.getStemmer().stem(similarTerm))) {
-				if (afterFirstTerm) { sb.append(", "); }
-				sb.append(similarTerm);
-				afterFirstTerm = true;
+		out.append("[[").append(term).append(link);
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads
+	 * @return an executor for the sections of large texts, see
+	 *         {@link #XWikiTextEnhancer(ExecutorService, int, int)}
+	 */
+	public static ExecutorService createSectionExecutor(int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Ontology enhancement " + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
 			}
-		}
-		sb.append("\"]]");
+		});
 	}
 
 	/**
-	 * Creates a link to the search wiki page.
-	 * 
-	 * @param terms
-	 *            a collection of search terms
-	 * @return the link
+	 * Thrown when the deadline of an enhancement has passed.
 	 */
-	protected String getSearchURL(Collection<String> terms) {
-		log.debug("** search terms: " + terms);
-		return LUCENE_URL + "?text=" + URLEncoder.encode(StringUtils.join(terms, ' '));
+	private static final class DeadlineExceededException extends IOException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Hands the text to the tokenizer and keeps the part of it that has been
+	 * read but not yet copied to the output. The window starts at the end of
+	 * the last token, so it only spans the tokens the analysis chain looks
+	 * ahead and the read buffer of the tokenizer.
+	 */
+	private static final class RecordingReader extends FilterReader {
+
+		/** don't compact the window for every token */
+		private static final int MIN_RELEASE = 4096;
+
+		private final StringBuilder window = new StringBuilder(2 * MIN_RELEASE);
+
+		/** offset of the first char of the window in the text */
+		private int windowStart;
+
+		RecordingReader(Reader in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int c = in.read();
+			if (c != -1)
+				window.append((char) c);
+			return c;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			int read = in.read(cbuf, off, len);
+			if (read > 0)
+				window.append(cbuf, off, read);
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			throw new IOException("skip not supported");
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		/**
+		 * @return the number of chars read so far
+		 */
+		int length() {
+			return windowStart + window.length();
+		}
+
+		void copyTo(Appendable out, int start, int end) throws IOException {
+			out.append(window, start - windowStart, end - windowStart);
+		}
+
+		CharSequence subSequence(int start, int end) {
+			return window.subSequence(start - windowStart, end - windowStart);
+		}
+
+		/**
+		 * Drops the text before <code>offset</code>, it won't be copied again.
+		 */
+		void release(int offset) {
+			int n = offset - windowStart;
+			if (n >= MIN_RELEASE && n >= window.length() >> 1) {
+				window.delete(0, n);
+				windowStart = offset;
+			}
+		}
 	}
 }
@@ -83,8 +83,22 @@ public class OntologyUtils {
 	 * @return a list of labels for the given class
 	 */
 	public static List<String> getLabels(OntClass clazz) {
+		return getLabels(clazz, Config.getListProperty(Config.LANGUAGES));
+	}
+
+	/**
+	 * Returns a list containing all labels for the given class in the given
+	 * languages. Use this variant when labels of many classes are read in a
+	 * row, so the configuration is looked up only once.
+	 * 
+	 * @param clazz
+	 *            an OntClass
+	 * @param languages
+	 *            language codes the labels are read for
+	 * @return a list of labels for the given class
+	 */
+	public static List<String> getLabels(OntClass clazz, List<String> languages) {
 		ArrayList<String> result = new ArrayList<String>();
-		List<String> languages = Config.getListProperty(Config.LANGUAGES);
 		for (String language : languages) {
 			ExtendedIterator labelIter = clazz.listLabels(language);
 			while (labelIter.hasNext()) {
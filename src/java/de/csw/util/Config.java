@@ -44,11 +44,60 @@ public class Config {
 	/** filename of the deployed domain ontology file */
 	public static final String ONTOLOGY_FILE = "ontology.file";
 
+	/** if true the Jena model is dropped once the concept tables of the ontology are compiled */
+	public static final String ONTOLOGY_RELEASE_MODEL = "ontology.releasemodel";
+
+	/** number of words whose stems are cached, 0 disables the cache */
+	public static final String STEMMER_CACHE_SIZE = "stemmer.cachesize";
+
+	/** number of chars of enhanced pages that are cached, 0 disables the cache */
+	public static final String ENHANCEMENT_CACHE_CHARS = "enhancement.cachechars";
+
+	/** if true saved pages are enhanced in the background and stored next to the document */
+	public static final String ENHANCEMENT_PRESAVE = "enhancement.presave";
+
+	/** directory of the stored enhancements; empty for a directory in the work directory of the wiki */
+	public static final String ENHANCEMENT_STORE_DIR = "enhancement.store.dir";
+
+	/** maximum number of chars of the blocks kept for incremental enhancement, 0 disables it */
+	public static final String ENHANCEMENT_INCREMENTAL_CHARS = "enhancement.incremental.cachechars";
+
+	/** pages with at least this many chars are enhanced in sections in parallel, 0 disables it */
+	public static final String ENHANCEMENT_PARALLEL_THRESHOLD = "enhancement.parallel.threshold";
+
+	/** number of threads enhancing sections, 0 for the number of processors */
+	public static final String ENHANCEMENT_PARALLEL_THREADS = "enhancement.parallel.threads";
+
+	/** milliseconds a page view spends on the enhancement before serving the page unchanged, 0 disables the limit */
+	public static final String ENHANCEMENT_BUDGET = "enhancement.budget";
+
+	/** number of threads completing the enhancements of pages over the time budget, at least 1 */
+	public static final String ENHANCEMENT_BUDGET_THREADS = "enhancement.budget.threads";
+
+	/** number of threads enhancing batches of pages, 0 for the number of processors */
+	public static final String ENHANCEMENT_BATCH_THREADS = "enhancement.batch.threads";
+
+	/**
+	 * "markup" to rewrite the wiki markup of viewed pages, "client" to leave
+	 * them unchanged and serve the recognized concepts as JSON, "transformation"
+	 * to link the concepts in the rendered XDOM
+	 */
+	public static final String ENHANCEMENT_MODE = "enhancement.mode";
+
 	/** directory being the root of the test data */
 	public static final String DIR_RESOURCES_TEST = "dir.resources.test";
 	public static final String LUCENE_URL = "lucene.url";
 	public static final String LUCENE_MAXSEARCHTERMS = "lucene.maxsearchterms";
 	public static final String LUCENE_EDITPROPRESULTS = "lucene.editpanel.maxresults";
+
+	/** maximum number of search results cached by the lucene plugin, 0 disables the cache */
+	public static final String LUCENE_RESULTCACHE_SIZE = "lucene.resultcache.size";
+
+	/**
+	 * seconds after which the lucene plugin closes an unused searcher on
+	 * additional index directories, 0 keeps them open
+	 */
+	public static final String LUCENE_SEARCHERPOOL_IDLE = "lucene.searcherpool.idletimeout";
 	
 	public static final String LANGUAGES = "languages";
 
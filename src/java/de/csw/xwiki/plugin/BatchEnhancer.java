@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.xwiki.plugin;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import de.csw.ontology.OntologySnapshot;
+import de.csw.ontology.XWikiTextEnhancer;
+
+/**
+ * Enhances many texts in parallel, e.g., all pages of an export. The texts
+ * are taken from an iterator in the calling thread, so they can be loaded
+ * lazily; at most two texts per thread are pending at any time. All texts of
+ * a batch are enhanced with the same ontology snapshot, and the analysis
+ * chains of the {@link XWikiTextEnhancer} stay with the pool threads from
+ * batch to batch.
+ * 
+ * @author rheese
+ * 
+ */
+public class BatchEnhancer {
+	static final Logger log = Logger.getLogger(BatchEnhancer.class);
+
+	private final XWikiTextEnhancer enhancer;
+
+	private final int threads;
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * @param enhancer
+	 *            the enhancer of the texts
+	 * @param threads
+	 *            number of threads, shared by all batches
+	 */
+	public BatchEnhancer(XWikiTextEnhancer enhancer, int threads) {
+		this.enhancer = enhancer;
+		this.threads = threads;
+		this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "Ontology batch enhancement " + count.incrementAndGet());
+						t.setDaemon(true);
+						t.setPriority(Thread.NORM_PRIORITY - 1);
+						return t;
+					}
+				});
+		// batches are rare, don't keep idle threads
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Enhances texts in parallel.
+	 * 
+	 * @param texts
+	 *            the texts, <code>null</code> elements are passed through
+	 * @param snapshot
+	 *            the ontology snapshot used for all texts
+	 * @return the enhanced texts in the order of <code>texts</code>. A text
+	 *         that could not be enhanced is returned unchanged.
+	 */
+	public List<String> enhanceAll(Iterable<String> texts, final OntologySnapshot snapshot) {
+		List<String> results = new ArrayList<String>();
+		LinkedList<Pending> pending = new LinkedList<Pending>();
+		for (final String text : texts) {
+			if (pending.size() >= 2 * threads) {
+				results.add(pending.removeFirst().await());
+			}
+			Future<String> result = null;
+			if (text != null) {
+				result = executor.submit(new Callable<String>() {
+					public String call() {
+						return enhancer.enhance(text, snapshot);
+					}
+				});
+			}
+			pending.add(new Pending(text, result));
+		}
+		while (!pending.isEmpty()) {
+			results.add(pending.removeFirst().await());
+		}
+		return results;
+	}
+
+	/**
+	 * Stops the threads. Running enhancements are interrupted.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * A submitted text.
+	 */
+	private static final class Pending {
+		final String text;
+		final Future<String> result;
+
+		Pending(String text, Future<String> result) {
+			this.text = text;
+			this.result = result;
+		}
+
+		String await() {
+			if (result == null)
+				return text;
+			try {
+				return result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				result.cancel(true);
+			} catch (ExecutionException e) {
+				log.error("Error while enhancing a text of a batch", e.getCause());
+			}
+			return text;
+		}
+	}
+}
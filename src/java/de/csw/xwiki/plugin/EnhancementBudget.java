@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.xwiki.plugin;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Limits the time a page view spends on its enhancement. The view enhances
+ * the page in its own thread with a deadline, see
+ * {@link de.csw.ontology.XWikiTextEnhancer#enhance(String, de.csw.ontology.OntologySnapshot, long)}.
+ * If the deadline passes, the view serves the original content and hands
+ * the page to a background thread, which enhances it to completion and fills
+ * the caches for the next views. Only pages over the budget reach the
+ * background threads, so their number does not limit the views, and a page
+ * is enhanced by at most one of them at a time.
+ * <p>
+ * Overruns are counted in total and per page, so slow pages can be found.
+ * </p>
+ * 
+ * @author rheese
+ * 
+ */
+public class EnhancementBudget {
+	static final Logger log = Logger.getLogger(EnhancementBudget.class);
+
+	/** maximum number of pending enhancements */
+	private static final int QUEUE_SIZE = 100;
+
+	/** maximum number of pages whose overruns are counted */
+	private static final int MAX_PAGES = 100;
+
+	/** time budget of a page view in milliseconds */
+	private final long budget;
+
+	private final ThreadPoolExecutor executor;
+
+	/** keys of the page versions enhanced in the background */
+	private final ConcurrentMap<Object, Boolean> running = new ConcurrentHashMap<Object, Boolean>();
+
+	private final AtomicLong overruns = new AtomicLong();
+
+	/** page => number of overruns, in access order; guarded by <code>this</code> */
+	private final LinkedHashMap<String, Long> pageOverruns = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+			return size() > MAX_PAGES;
+		}
+	};
+
+	/**
+	 * @param budget
+	 *            time budget of a page view in milliseconds
+	 * @param threads
+	 *            number of threads completing the enhancements of pages over
+	 *            the budget
+	 */
+	public EnhancementBudget(long budget, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		this.budget = budget;
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "Ontology budgeted enhancement " + count.incrementAndGet());
+						t.setDaemon(true);
+						t.setPriority(Thread.MIN_PRIORITY);
+						return t;
+					}
+				});
+	}
+
+	/**
+	 * @return the deadline of a view starting now, as a value of
+	 *         {@link System#nanoTime()}
+	 */
+	public long getDeadline() {
+		return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
+	}
+
+	/**
+	 * Counts a view that exceeded the budget and enhances the page in the
+	 * background, unless that is already under way.
+	 * 
+	 * @param key
+	 *            identifies the page version
+	 * @param page
+	 *            name of the page for the overrun counters
+	 * @param completion
+	 *            enhances the page without a deadline and caches the result
+	 */
+	public void overrun(final Object key, String page, final Runnable completion) {
+		log.info("Enhancement of " + page + " exceeds the time budget of " + budget + " ms, serving it unchanged");
+		count(page);
+		if (running.putIfAbsent(key, Boolean.TRUE) != null)
+			return;
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						completion.run();
+					} finally {
+						running.remove(key);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			running.remove(key);
+			log.warn("Too many pending enhancements, " + page + " is enhanced on a later view");
+		}
+	}
+
+	private void count(String page) {
+		overruns.incrementAndGet();
+		synchronized (this) {
+			Long count = pageOverruns.get(page);
+			pageOverruns.put(page, Long.valueOf(count == null ? 1 : count.longValue() + 1));
+		}
+	}
+
+	/**
+	 * @return the time budget of a page view in milliseconds
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return number of page views that exceeded the budget
+	 */
+	public long getOverruns() {
+		return overruns.get();
+	}
+
+	/**
+	 * @return the pages that exceeded the budget recently, with the number
+	 *         of overruns
+	 */
+	public synchronized Map<String, Long> getPageOverruns() {
+		return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(pageOverruns));
+	}
+
+	/**
+	 * @return number of background enhancements running or waiting
+	 */
+	public int getRunning() {
+		return running.size();
+	}
+
+	/**
+	 * Resets the overrun counters.
+	 */
+	public synchronized void resetOverruns() {
+		overruns.set(0);
+		pageOverruns.clear();
+	}
+
+	/**
+	 * Stops the background threads. Running enhancements are interrupted,
+	 * pending ones are discarded.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
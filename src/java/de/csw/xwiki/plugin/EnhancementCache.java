@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.xwiki.plugin;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * LRU cache of enhanced page contents, bounded by the total number of chars
+ * of the cached contents, so a few huge pages cannot exhaust the memory. An entry is keyed by the
+ * document reference, language and version of the page and by the version of
+ * the ontology snapshot that enhanced it, so a changed page or a reloaded
+ * ontology never hits an outdated entry. Outdated entries are dropped
+ * explicitly with {@link #invalidate(Object)} and {@link #clear()} to free the
+ * memory early.
+ * 
+ * @author rheese
+ * 
+ */
+public class EnhancementCache {
+	static final Logger log = Logger.getLogger(EnhancementCache.class);
+
+	/** maximum number of cached chars */
+	private final int maxChars;
+
+	/** key => enhanced content, in access order; guarded by <code>this</code> */
+	private final LinkedHashMap<Key, String> entries = new LinkedHashMap<Key, String>(16, 0.75f, true);
+
+	/** number of chars of all cached contents; guarded by <code>this</code> */
+	private long chars;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param maxChars
+	 *            maximum number of chars of all cached contents, 0 disables
+	 *            the cache
+	 */
+	public EnhancementCache(int maxChars) {
+		this.maxChars = maxChars;
+	}
+
+	/**
+	 * @param document
+	 *            reference of the document
+	 * @param language
+	 *            language of the document
+	 * @param version
+	 *            version of the document
+	 * @param snapshotVersion
+	 *            version of the ontology snapshot
+	 * @return the enhanced content or <code>null</code> if it is not cached
+	 */
+	public String get(Object document, String language, String version, long snapshotVersion) {
+		if (maxChars == 0)
+			return null;
+		String content;
+		synchronized (this) {
+			content = entries.get(new Key(document, language, version, snapshotVersion));
+		}
+		if (content == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return content;
+	}
+
+	/**
+	 * Stores the enhanced content of a document. The least recently used
+	 * entries are dropped until the cache is within its bound again. A
+	 * content larger than the whole cache is not stored.
+	 * 
+	 * @see #get(Object, String, String, long)
+	 */
+	public void put(Object document, String language, String version, long snapshotVersion, String content) {
+		if (maxChars == 0 || content.length() > maxChars)
+			return;
+		synchronized (this) {
+			String old = entries.put(new Key(document, language, version, snapshotVersion), content);
+			chars += content.length() - (old == null ? 0 : old.length());
+			for (Iterator<String> it = entries.values().iterator(); chars > maxChars;) {
+				chars -= it.next().length();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drops all entries of a document, in all languages and versions.
+	 * 
+	 * @param document
+	 *            reference of the document
+	 */
+	public synchronized void invalidate(Object document) {
+		for (Iterator<Map.Entry<Key, String>> it = entries.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Key, String> e = it.next();
+			if (e.getKey().document.equals(document)) {
+				chars -= e.getValue().length();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drops all entries, e.g., after the ontology has been reloaded.
+	 */
+	public synchronized void clear() {
+		log.debug("Clearing enhancement cache with " + entries.size() + " entries");
+		entries.clear();
+		chars = 0;
+	}
+
+	/**
+	 * @return number of cached pages
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return number of chars of all cached contents
+	 */
+	public synchronized long getChars() {
+		return chars;
+	}
+
+	/**
+	 * @return maximum number of cached chars
+	 */
+	public int getMaxChars() {
+		return maxChars;
+	}
+
+	/**
+	 * @return number of lookups that found an entry
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups that did not find an entry
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return hits / lookups, 0 if there was no lookup yet
+	 */
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	@Override
+	public String toString() {
+		return "EnhancementCache[size=" + size() + ", chars=" + getChars() + "/" + maxChars + ", hits=" + hits.get() + ", misses=" + misses.get() + "]";
+	}
+
+	/**
+	 * Key of a cache entry.
+	 */
+	private static final class Key {
+		final Object document;
+		final String language;
+		final String version;
+		final long snapshotVersion;
+		final int hash;
+
+		Key(Object document, String language, String version, long snapshotVersion) {
+			this.document = document;
+			this.language = language == null ? "" : language;
+			this.version = version == null ? "" : version;
+			this.snapshotVersion = snapshotVersion;
+			int h = document.hashCode();
+			h = 31 * h + this.language.hashCode();
+			h = 31 * h + this.version.hashCode();
+			h = 31 * h + (int) (snapshotVersion ^ (snapshotVersion >>> 32));
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return snapshotVersion == other.snapshotVersion && document.equals(other.document)
+					&& language.equals(other.language) && version.equals(other.version);
+		}
+	}
+}
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.xwiki.plugin;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Sidecar store for enhanced page contents. Every document language has one
+ * file in the store directory, holding the document version and the ontology
+ * fingerprint the content was enhanced for. A stored content is only returned
+ * if both still match, so a saved page or a changed ontology falls back to
+ * live enhancement.
+ * <p>
+ * Files are written to a temporary file first and renamed afterwards, so
+ * readers never see a partially written content.
+ * </p>
+ * <p>
+ * Stored contents replace the source of viewed pages, so only the user
+ * running the wiki may write to the directory. It is made accessible by its
+ * owner only, and a directory owned by another user is refused.
+ * </p>
+ * 
+ * @author rheese
+ * 
+ */
+public class EnhancementStore {
+	static final Logger log = Logger.getLogger(EnhancementStore.class);
+
+	private static final String ENCODING = "UTF-8";
+
+	private static final String SUFFIX = ".enh";
+
+	private final File dir;
+
+	/**
+	 * @param dir
+	 *            directory holding the files; created if it does not exist
+	 *            and made accessible by its owner only
+	 * @throws IOException
+	 *             if the directory cannot be created or is not owned by the
+	 *             user running the wiki
+	 */
+	public EnhancementStore(File dir) throws IOException {
+		this.dir = dir;
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Could not create enhancement store directory " + dir);
+		checkOwner(dir);
+		restrictToOwner(dir);
+	}
+
+	/**
+	 * @param document
+	 *            serialized reference of the document
+	 * @param language
+	 *            language of the document
+	 * @param version
+	 *            current version of the document
+	 * @param fingerprint
+	 *            fingerprint of the current ontology
+	 * @return the stored enhanced content, or <code>null</code> if there is
+	 *         none or it was enhanced for another document version or
+	 *         ontology
+	 */
+	public String load(String document, String language, String version, long fingerprint) {
+		File file = getFile(document, language);
+		if (!file.isFile())
+			return null;
+
+		BufferedReader br = null;
+		try {
+			br = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+			String header = br.readLine();
+			if (header == null || !header.equals(header(document, language, version, fingerprint))) {
+				log.debug("Stored enhancement of " + document + " is outdated");
+				return null;
+			}
+			StringBuilder content = new StringBuilder((int) file.length());
+			char[] buf = new char[8192];
+			int n;
+			while ((n = br.read(buf)) != -1) {
+				content.append(buf, 0, n);
+			}
+			return content.toString();
+		} catch (IOException e) {
+			log.warn("Could not read stored enhancement of " + document, e);
+			return null;
+		} finally {
+			close(br);
+		}
+	}
+
+	/**
+	 * Stores the enhanced content of a document, replacing any former one.
+	 * 
+	 * @see #load(String, String, String, long)
+	 */
+	public void save(String document, String language, String version, long fingerprint, String content)
+			throws IOException {
+		File file = getFile(document, language);
+		File tmp = new File(dir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		Writer w = null;
+		try {
+			w = new OutputStreamWriter(new FileOutputStream(tmp), ENCODING);
+			w.write(header(document, language, version, fingerprint));
+			w.write('\n');
+			w.write(content);
+			w.close();
+			w = null;
+			// rename does not replace an existing file on all platforms
+			if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+				throw new IOException("Could not rename " + tmp + " to " + file);
+			}
+		} finally {
+			close(w);
+			if (tmp.exists() && !tmp.delete()) {
+				log.warn("Could not delete " + tmp);
+			}
+		}
+	}
+
+	/**
+	 * Lists the stored contents, e.g., to enhance them again after the
+	 * ontology has changed. Only the headers of the files are read.
+	 * 
+	 * @return the stored contents, without the contents themselves
+	 */
+	public List<Entry> list() {
+		List<Entry> result = new ArrayList<Entry>();
+		File[] files = dir.listFiles();
+		if (files == null)
+			return result;
+		for (File file : files) {
+			if (!file.getName().endsWith(SUFFIX))
+				continue;
+			BufferedReader br = null;
+			try {
+				br = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+				String header = br.readLine();
+				String[] fields = header == null ? null : header.split("\t", 4);
+				if (fields == null || fields.length < 4) {
+					log.warn("Invalid header in " + file);
+					continue;
+				}
+				result.add(new Entry(fields[3], fields[2], fields[0], Long.parseLong(fields[1], 16)));
+			} catch (NumberFormatException e) {
+				log.warn("Invalid header in " + file);
+			} catch (IOException e) {
+				log.warn("Could not read " + file, e);
+			} finally {
+				close(br);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Drops the stored content of a document language.
+	 */
+	public void remove(String document, String language) {
+		File file = getFile(document, language);
+		if (file.exists() && !file.delete()) {
+			log.warn("Could not delete " + file);
+		}
+	}
+
+	/**
+	 * Takes away all permissions of the group and others.
+	 */
+	private static void restrictToOwner(File dir) throws IOException {
+		if (!(dir.setReadable(false, false) && dir.setReadable(true, true)
+				&& dir.setWritable(false, false) && dir.setWritable(true, true)
+				&& dir.setExecutable(false, false) && dir.setExecutable(true, true))) {
+			throw new IOException("Could not restrict the permissions of " + dir);
+		}
+	}
+
+	/**
+	 * Compares the owner of the directory with the owner of a file created
+	 * in it by this process.
+	 */
+	private static void checkOwner(File dir) throws IOException {
+		File probe = File.createTempFile("owner", ".tmp", dir);
+		try {
+			UserPrincipal owner = Files.getOwner(dir.toPath());
+			if (!owner.equals(Files.getOwner(probe.toPath()))) {
+				throw new IOException("Enhancement store directory " + dir + " is owned by " + owner
+						+ ", not by the user running the wiki");
+			}
+		} finally {
+			if (!probe.delete())
+				log.warn("Could not delete " + probe);
+		}
+	}
+
+	private static void close(Closeable c) {
+		if (c != null) {
+			try {
+				c.close();
+			} catch (IOException e) {
+				log.warn("Could not close enhancement store file", e);
+			}
+		}
+	}
+
+	/**
+	 * The header identifies document and language as well, as different keys
+	 * may share a file name.
+	 */
+	private static String header(String document, String language, String version, long fingerprint) {
+		return version + '\t' + Long.toHexString(fingerprint) + '\t' + language + '\t' + document;
+	}
+
+	private File getFile(String document, String language) {
+		return new File(dir, hash(document + '\u0000' + language) + SUFFIX);
+	}
+
+	private static String hash(String key) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(ENCODING));
+			StringBuilder sb = new StringBuilder(2 * digest.length);
+			for (byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Header of a stored content, see {@link EnhancementStore#list()}.
+	 */
+	public static final class Entry {
+		/** serialized reference of the document */
+		public final String document;
+		public final String language;
+		/** document version the content was enhanced for */
+		public final String version;
+		/** fingerprint of the ontology the content was enhanced with */
+		public final long fingerprint;
+
+		Entry(String document, String language, String version, long fingerprint) {
+			this.document = document;
+			this.language = language;
+			this.version = version;
+			this.fingerprint = fingerprint;
+		}
+	}
+}
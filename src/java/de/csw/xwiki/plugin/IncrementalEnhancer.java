@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.xwiki.plugin;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import de.csw.lucene.WikiTokenizer;
+import de.csw.ontology.EnhancementContext;
+import de.csw.ontology.OntologySnapshot;
+import de.csw.ontology.XWikiTextEnhancer;
+
+/**
+ * Enhances pages block by block and keeps the annotated blocks of the last
+ * enhanced version of recently enhanced documents, bounded by the total
+ * number of chars of the blocks and their annotations. When an edited version is enhanced,
+ * only the blocks whose content changed are run through the
+ * {@link XWikiTextEnhancer}; the others are taken over from the previous
+ * version.
+ * <p>
+ * Blocks are split with {@link WikiTokenizer#nextBlock(String, int)}, i.e.,
+ * at blank lines and headings, but never inside a link or macro.
+ * Blocks are enhanced independently in every case, so the result only
+ * depends on the content and the ontology, not on the versions enhanced
+ * before. As a consequence labels are not matched across paragraphs.
+ * Blocks are recognized by their content, which is kept next to the
+ * annotated block, and are only reused with the ontology snapshot they were
+ * enhanced with.
+ * </p>
+ * 
+ * @author rheese
+ * 
+ */
+public class IncrementalEnhancer {
+	static final Logger log = Logger.getLogger(IncrementalEnhancer.class);
+
+	private final XWikiTextEnhancer enhancer;
+
+	/** maximum number of kept chars */
+	private final int maxChars;
+
+	/** document and language => blocks of the last enhanced version, in access order; guarded by <code>this</code> */
+	private final LinkedHashMap<Key, Blocks> documents = new LinkedHashMap<Key, Blocks>(16, 0.75f, true);
+
+	/** number of chars of all kept blocks; guarded by <code>this</code> */
+	private long chars;
+
+	/**
+	 * @param enhancer
+	 *            enhancer for the changed blocks
+	 * @param maxChars
+	 *            maximum number of chars of all kept blocks, original and
+	 *            annotated
+	 */
+	public IncrementalEnhancer(XWikiTextEnhancer enhancer, int maxChars) {
+		this.enhancer = enhancer;
+		this.maxChars = maxChars;
+	}
+
+	/**
+	 * Enhances the content of a document, reusing the unchanged blocks of
+	 * the version enhanced before.
+	 * 
+	 * @param document
+	 *            reference of the document
+	 * @param language
+	 *            language of the document
+	 * @param content
+	 *            content of the document
+	 * @param snapshot
+	 *            the ontology snapshot used for the changed blocks
+	 * @return the enhanced content
+	 */
+	public String enhance(Object document, String language, String content, OntologySnapshot snapshot) {
+		return enhance(document, language, content, snapshot, EnhancementContext.NO_DEADLINE);
+	}
+
+	/**
+	 * Same as {@link #enhance(Object, String, String, OntologySnapshot)},
+	 * giving up once a deadline has passed. The blocks enhanced until then
+	 * are kept, so the next call continues where this one stopped.
+	 * 
+	 * @param deadline
+	 *            value of {@link System#nanoTime()} after which the call is
+	 *            given up, or {@link EnhancementContext#NO_DEADLINE}
+	 * @return the enhanced content, <code>null</code> if the deadline has
+	 *         passed
+	 */
+	public String enhance(Object document, String language, String content, OntologySnapshot snapshot, long deadline) {
+		Key key = new Key(document, language);
+		Blocks previous;
+		synchronized (this) {
+			previous = documents.get(key);
+		}
+		Map<String, String> reusable = previous != null && previous.snapshotVersion == snapshot.getVersion()
+				? previous.results : Collections.<String, String>emptyMap();
+
+		Map<String, String> results = new HashMap<String, String>();
+		StringBuilder sb = new StringBuilder(content.length() + (content.length() >> 3));
+		int blocks = 0;
+		int enhanced = 0;
+		for (int start = 0, end; start < content.length(); start = end) {
+			end = WikiTokenizer.nextBlock(content, start);
+			String block = content.substring(start, end);
+			String result = reusable.get(block);
+			if (result == null) {
+				result = enhancer.enhance(block, snapshot, deadline);
+				if (result == null) {
+					// keep the blocks that are not enhanced again yet as well
+					for (Map.Entry<String, String> e : reusable.entrySet()) {
+						if (!results.containsKey(e.getKey()))
+							results.put(e.getKey(), e.getValue());
+					}
+					keep(key, new Blocks(snapshot.getVersion(), results));
+					return null;
+				}
+				enhanced++;
+			}
+			results.put(block, result);
+			sb.append(result);
+			blocks++;
+		}
+
+		keep(key, new Blocks(snapshot.getVersion(), results));
+		if (log.isDebugEnabled())
+			log.debug("Enhanced " + enhanced + " of " + blocks + " blocks of " + document);
+		return sb.toString();
+	}
+
+	/**
+	 * Keeps the blocks of a document, replacing the former ones. The least
+	 * recently enhanced documents are dropped until the bound is kept again.
+	 * Blocks larger than the whole bound are not kept.
+	 */
+	private synchronized void keep(Key key, Blocks blocks) {
+		Blocks old = blocks.chars > maxChars ? documents.remove(key) : documents.put(key, blocks);
+		chars += (blocks.chars > maxChars ? 0 : blocks.chars) - (old == null ? 0 : old.chars);
+		for (Iterator<Blocks> it = documents.values().iterator(); chars > maxChars;) {
+			chars -= it.next().chars;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Drops the blocks of a document in all languages, e.g., after it has
+	 * been deleted.
+	 * 
+	 * @param document
+	 *            reference of the document
+	 */
+	public synchronized void remove(Object document) {
+		for (Iterator<Map.Entry<Key, Blocks>> it = documents.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Key, Blocks> e = it.next();
+			if (e.getKey().document.equals(document)) {
+				chars -= e.getValue().chars;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drops all blocks, e.g., after the ontology has been reloaded.
+	 */
+	public synchronized void clear() {
+		documents.clear();
+		chars = 0;
+	}
+
+	/**
+	 * @return number of documents whose blocks are kept
+	 */
+	public synchronized int size() {
+		return documents.size();
+	}
+
+	/**
+	 * @return number of chars of all kept blocks
+	 */
+	public synchronized long getChars() {
+		return chars;
+	}
+
+	/**
+	 * @return maximum number of kept chars
+	 */
+	public int getMaxChars() {
+		return maxChars;
+	}
+
+	/**
+	 * The annotated blocks of an enhanced version.
+	 */
+	private static final class Blocks {
+		final long snapshotVersion;
+
+		/** block => annotated block */
+		final Map<String, String> results;
+
+		/** number of chars of the blocks and the annotated blocks */
+		final long chars;
+
+		Blocks(long snapshotVersion, Map<String, String> results) {
+			this.snapshotVersion = snapshotVersion;
+			this.results = results;
+			long n = 0;
+			for (Map.Entry<String, String> e : results.entrySet()) {
+				n += e.getKey().length() + e.getValue().length();
+			}
+			this.chars = n;
+		}
+	}
+
+	/**
+	 * Document and language.
+	 */
+	private static final class Key {
+		final Object document;
+		final String language;
+
+		Key(Object document, String language) {
+			this.document = document;
+			this.language = language == null ? "" : language;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * document.hashCode() + language.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return document.equals(other.document) && language.equals(other.language);
+		}
+	}
+}
@@ -27,6 +27,7 @@ package de.csw.xwiki.plugin;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 
 import org.apache.log4j.Logger;
 
@@ -35,7 +36,9 @@ import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.notify.XWikiNotificationRule;
 
 import de.csw.linkgenerator.CSWLinksetRenderer;
-import de.csw.ontology.XWikiTextEnhancer;
+import de.csw.ontology.EnhancementContext;
+import de.csw.ontology.OntologyIndex;
+import de.csw.ontology.OntologySnapshot;
 
 public class OntologyNotificationRule implements XWikiNotificationRule {
 	static Logger log = Logger.getLogger(OntologyNotificationRule.class);
@@ -47,11 +50,9 @@ public class OntologyNotificationRule implements XWikiNotificationRule {
 	static final String ACTION_SAVE = "save";
 	static final String ACTION_LOCK = "lock";
 	
-	private XWikiTextEnhancer textEnhancer;
 	private CSWLinksetRenderer linksetRenderer;
 	
 	public OntologyNotificationRule(OntologyPlugin plugin) {
-		textEnhancer = new XWikiTextEnhancer();
 		this.linksetRenderer = new CSWLinksetRenderer();
 		this.plugin = plugin;
 	}
@@ -60,7 +61,34 @@ public class OntologyNotificationRule implements XWikiNotificationRule {
 		log.debug("VERIFY called");
 	}
 
+	/**
+	 * Called when a document has been saved or deleted. Cached enhancements
+	 * of the document are dropped. If pre-enhancement is enabled, a saved
+	 * document is enhanced in the background. The annotated blocks for
+	 * incremental enhancement are kept for the next version unless the
+	 * document has been deleted.
+	 */
 	public void verify(XWikiDocument newDoc, XWikiDocument oldDoc, XWikiContext context) {
+		XWikiDocument doc = newDoc != null ? newDoc : oldDoc;
+		if (doc == null)
+			return;
+
+		plugin.getEnhancementCache().invalidate(doc.getDocumentReference());
+		plugin.getConceptHitsCache().invalidate(doc.getDocumentReference());
+
+		IncrementalEnhancer incrementalEnhancer = plugin.getIncrementalEnhancer();
+		if (incrementalEnhancer != null && (newDoc == null || newDoc.isNew())) {
+			incrementalEnhancer.remove(doc.getDocumentReference());
+		}
+
+		PreEnhancer preEnhancer = plugin.getPreEnhancer();
+		if (preEnhancer != null) {
+			if (newDoc == null || newDoc.isNew()) {
+				preEnhancer.remove(doc);
+			} else {
+				preEnhancer.enhanceLater(newDoc);
+			}
+		}
 	}
 
 	/**
@@ -79,11 +107,34 @@ public class OntologyNotificationRule implements XWikiNotificationRule {
 
 		XWikiDocument orignialDoc = doc.getOriginalDocument();
 
-		if (ACTION_VIEW.equals(action)) {
+		if (ACTION_VIEW.equals(action) && !plugin.isMarkupMode()) {
+
+			// the page is annotated by the client or while rendering, show it unchanged
+			if (orignialDoc != null)
+				doc.setContent(orignialDoc.getContent());
+		} else if (ACTION_VIEW.equals(action)) {
 			
-			String content = orignialDoc != null ? orignialDoc.getContent() : doc.getContent();
-			String enhancedContent = textEnhancer.enhance(content);
-			// enhancedContent = linksetRenderer.renderLinks(enhancedContent);
+			XWikiDocument source = orignialDoc != null ? orignialDoc : doc;
+			OntologySnapshot snapshot = OntologyIndex.get().getSnapshot();
+			EnhancementCache cache = plugin.getEnhancementCache();
+
+			String enhancedContent = cache.get(source.getDocumentReference(), source.getLanguage(), source.getVersion(), snapshot.getVersion());
+			if (enhancedContent == null) {
+				PreEnhancer preEnhancer = plugin.getPreEnhancer();
+				if (preEnhancer != null) {
+					enhancedContent = preEnhancer.lookup(source, snapshot);
+				}
+				if (enhancedContent != null) {
+					cache.put(source.getDocumentReference(), source.getLanguage(), source.getVersion(), snapshot.getVersion(), enhancedContent);
+				} else {
+					enhancedContent = enhance(source, snapshot);
+					if (enhancedContent == null) {
+						// over budget, the enhancement continues in the background
+						doc.setContent(source.getContent());
+						return;
+					}
+				}
+			}
 			
 			doc.setContent(enhancedContent);
 		} else if (ACTION_EDIT.equals(action)) {
@@ -97,6 +148,60 @@ public class OntologyNotificationRule implements XWikiNotificationRule {
 		}
 	}
 
+	/**
+	 * Enhances a document that was found in no cache. If a time budget is
+	 * configured and exceeded, the document is enhanced in the background
+	 * and the view gets <code>null</code>.
+	 * 
+	 * @return the enhanced content or <code>null</code> if the budget has
+	 *         been exceeded
+	 */
+	private String enhance(final XWikiDocument source, final OntologySnapshot snapshot) {
+		// read before the view may change the content of the document
+		final String content = source.getContent();
+		EnhancementBudget budget = plugin.getEnhancementBudget();
+		if (budget == null)
+			return enhanceAndCache(source, content, snapshot, EnhancementContext.NO_DEADLINE);
+
+		String enhancedContent = enhanceAndCache(source, content, snapshot, budget.getDeadline());
+		if (enhancedContent == null) {
+			Object key = Arrays.<Object>asList(source.getDocumentReference(), source.getLanguage(), source.getVersion(), snapshot.getVersion());
+			budget.overrun(key, String.valueOf(source.getDocumentReference()), new Runnable() {
+				public void run() {
+					enhanceAndCache(source, content, snapshot, EnhancementContext.NO_DEADLINE);
+				}
+			});
+		}
+		return enhancedContent;
+	}
+
+	/**
+	 * Enhances the content of a document and puts the result into the
+	 * caches.
+	 * 
+	 * @return the enhanced content or <code>null</code> if the deadline has
+	 *         passed
+	 */
+	private String enhanceAndCache(XWikiDocument source, String content, OntologySnapshot snapshot, long deadline) {
+		String enhancedContent;
+		IncrementalEnhancer incrementalEnhancer = plugin.getIncrementalEnhancer();
+		if (incrementalEnhancer != null) {
+			enhancedContent = incrementalEnhancer.enhance(source.getDocumentReference(), source.getLanguage(), content, snapshot, deadline);
+		} else {
+			enhancedContent = plugin.getTextEnhancer().enhance(content, snapshot, deadline);
+		}
+		if (enhancedContent == null)
+			return null;
+		// enhancedContent = linksetRenderer.renderLinks(enhancedContent);
+		PreEnhancer preEnhancer = plugin.getPreEnhancer();
+		if (preEnhancer != null) {
+			// missing or outdated, e.g. after the ontology has changed
+			preEnhancer.storeLater(source, snapshot, enhancedContent);
+		}
+		plugin.getEnhancementCache().put(source.getDocumentReference(), source.getLanguage(), source.getVersion(), snapshot.getVersion(), enhancedContent);
+		return enhancedContent;
+	}
+
 	public void preverify(XWikiDocument newDoc, XWikiDocument oldDoc, XWikiContext context) {
 		// nothing to do here
 	}
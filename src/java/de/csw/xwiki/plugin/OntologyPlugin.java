@@ -25,17 +25,26 @@
  ******************************************************************************/
 package de.csw.xwiki.plugin;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
 import org.apache.log4j.Logger;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.api.Api;
+import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.notify.XWikiNotificationManager;
 import com.xpn.xwiki.notify.XWikiNotificationRule;
 import com.xpn.xwiki.plugin.XWikiDefaultPlugin;
 import com.xpn.xwiki.plugin.XWikiPluginInterface;
 
+import de.csw.ontology.ConceptHits;
 import de.csw.ontology.OntologyIndex;
+import de.csw.ontology.OntologySnapshot;
+import de.csw.ontology.XWikiTextEnhancer;
 import de.csw.util.Config;
+import de.csw.xwiki.rendering.OntologyTransformation;
 
 public class OntologyPlugin extends XWikiDefaultPlugin {
 	private static Logger log = Logger.getLogger(OntologyPlugin.class); 
@@ -44,8 +53,40 @@ public class OntologyPlugin extends XWikiDefaultPlugin {
 
 	private static final String ID = "ontology";
 
+	static final String MODE_MARKUP = "markup";
+	static final String MODE_CLIENT = "client";
+
 	/** if enabled == false no text enhancement is performed */
 	boolean enabled = true;
+
+	/** enhanced page contents, see {@link Config#ENHANCEMENT_CACHE_CHARS} */
+	private EnhancementCache enhancementCache = new EnhancementCache(0);
+
+	/** how pages are annotated, see {@link Config#ENHANCEMENT_MODE} */
+	private String mode = MODE_MARKUP;
+
+	/** concepts of pages as JSON, see {@link #getConceptHits(XWikiDocument)} */
+	private EnhancementCache conceptHitsCache = new EnhancementCache(0);
+
+	private XWikiTextEnhancer textEnhancer;
+
+	/** enhances sections of large pages in parallel, <code>null</code> if disabled; see {@link Config#ENHANCEMENT_PARALLEL_THRESHOLD} */
+	private ExecutorService sectionExecutor;
+
+	/** annotates viewed pages */
+	private XWikiNotificationRule rule;
+
+	/** stores enhancements of saved pages, <code>null</code> if disabled; see {@link Config#ENHANCEMENT_PRESAVE} */
+	private PreEnhancer preEnhancer;
+
+	/** enhances changed blocks of edited pages only, <code>null</code> if disabled; see {@link Config#ENHANCEMENT_INCREMENTAL_CHARS} */
+	private IncrementalEnhancer incrementalEnhancer;
+
+	/** limits the time page views wait for the enhancement, <code>null</code> if disabled; see {@link Config#ENHANCEMENT_BUDGET} */
+	private EnhancementBudget enhancementBudget;
+
+	/** enhances batches of pages, e.g., for exports; see {@link Config#ENHANCEMENT_BATCH_THREADS} */
+	private BatchEnhancer batchEnhancer;
 	
 	public OntologyPlugin(String name, String className, XWikiContext context) {
 		super(name, className, context);
@@ -66,14 +107,188 @@ public class OntologyPlugin extends XWikiDefaultPlugin {
 		// load the ontology
 		log.debug("Loading ontology from file " + Config.getAppProperty(Config.ONTOLOGY_FILE));
 		OntologyIndex.get().load(cl.getResourceAsStream(Config.getAppProperty(Config.ONTOLOGY_FILE)));
-		log.debug("** " + OntologyIndex.get().getModel().size() + " statements loaded.");
+		log.debug("** " + OntologyIndex.get().getSnapshot().getConceptCount() + " concepts loaded.");
+
+		enhancementCache = new EnhancementCache(Config.getIntAppProperty(Config.ENHANCEMENT_CACHE_CHARS));
+		int parallelThreshold = Config.getIntAppProperty(Config.ENHANCEMENT_PARALLEL_THRESHOLD);
+		int parallelThreads = Config.getIntAppProperty(Config.ENHANCEMENT_PARALLEL_THREADS);
+		if (parallelThreads <= 0)
+			parallelThreads = Runtime.getRuntime().availableProcessors();
+		if (parallelThreshold > 0)
+			sectionExecutor = XWikiTextEnhancer.createSectionExecutor(parallelThreads);
+		textEnhancer = new XWikiTextEnhancer(sectionExecutor, parallelThreshold, parallelThreads);
+		mode = Config.getAppProperty(Config.ENHANCEMENT_MODE);
+		log.debug("Annotating pages in " + mode + " mode");
+		OntologyTransformation.setActive(OntologyTransformation.MODE.equals(mode));
+		if (isClientMode()) {
+			conceptHitsCache = new EnhancementCache(Config.getIntAppProperty(Config.ENHANCEMENT_CACHE_CHARS));
+		}
+		if (Config.getBooleanAppProperty(Config.ENHANCEMENT_PRESAVE)) {
+			String dir = Config.getAppProperty(Config.ENHANCEMENT_STORE_DIR);
+			File storeDir = dir == null || dir.trim().isEmpty()
+					? context.getWiki().getWorkSubdirectory("ontology_enhancements", context)
+					: new File(dir.trim());
+			log.debug("Storing enhancements of saved pages in " + storeDir);
+			try {
+				preEnhancer = new PreEnhancer(new EnhancementStore(storeDir), new XWikiTextEnhancer());
+			} catch (IOException e) {
+				log.error("Pre-enhancement of saved pages disabled", e);
+			}
+		}
+		int incrementalChars = Config.getIntAppProperty(Config.ENHANCEMENT_INCREMENTAL_CHARS);
+		if (incrementalChars > 0) {
+			incrementalEnhancer = new IncrementalEnhancer(new XWikiTextEnhancer(), incrementalChars);
+		}
+		int batchThreads = Config.getIntAppProperty(Config.ENHANCEMENT_BATCH_THREADS);
+		batchEnhancer = new BatchEnhancer(new XWikiTextEnhancer(),
+				batchThreads > 0 ? batchThreads : Runtime.getRuntime().availableProcessors());
+		int budget = Config.getIntAppProperty(Config.ENHANCEMENT_BUDGET);
+		if (budget > 0) {
+			int budgetThreads = Config.getIntAppProperty(Config.ENHANCEMENT_BUDGET_THREADS);
+			if (budgetThreads < 1) {
+				log.warn(Config.ENHANCEMENT_BUDGET_THREADS + " must be at least 1, using 1 thread");
+				budgetThreads = 1;
+			}
+			enhancementBudget = new EnhancementBudget(budget, budgetThreads);
+		}
 		
 		XWikiNotificationManager notificationManager = context.getWiki().getNotificationManager();
 		
-		XWikiNotificationRule rule = new OntologyNotificationRule(this);
+		rule = new OntologyNotificationRule(this);
 		notificationManager.addGeneralRule(rule);
 	}
+
+	/**
+	 * Stops the threads of the plug-in. Pending background enhancements are
+	 * discarded.
+	 */
+	void shutdown() {
+		if (sectionExecutor != null)
+			sectionExecutor.shutdownNow();
+		sectionExecutor = null;
+		if (preEnhancer != null)
+			preEnhancer.shutdown();
+		preEnhancer = null;
+		if (batchEnhancer != null)
+			batchEnhancer.shutdown();
+		batchEnhancer = null;
+		if (enhancementBudget != null)
+			enhancementBudget.shutdown();
+		enhancementBudget = null;
+		incrementalEnhancer = null;
+	}
 	
+	/**
+	 * Reads the configured ontology file again and replaces the current
+	 * ontology. Page views running concurrently finish with the old ontology;
+	 * all views started after the swap use the new one. Stored enhancements
+	 * of saved pages are enhanced again in the background.
+	 * 
+	 * @param context
+	 *            the context of the request
+	 */
+	public void reloadOntology(XWikiContext context) {
+		ClassLoader cl = OntologyPlugin.class.getClassLoader();
+		log.info("Reloading ontology from file " + Config.getAppProperty(Config.ONTOLOGY_FILE));
+		OntologyIndex.get().reload(cl.getResourceAsStream(Config.getAppProperty(Config.ONTOLOGY_FILE)));
+		log.info("** " + OntologyIndex.get().getSnapshot().getConceptCount() + " concepts loaded.");
+		// entries of the old ontology are never hit again
+		enhancementCache.clear();
+		conceptHitsCache.clear();
+		if (incrementalEnhancer != null)
+			incrementalEnhancer.clear();
+		if (preEnhancer != null)
+			preEnhancer.enhanceAllLater(context);
+	}
+
+	/**
+	 * @return the enhancer of viewed pages
+	 */
+	public XWikiTextEnhancer getTextEnhancer() {
+		return textEnhancer;
+	}
+
+	/**
+	 * @return the background enhancer of saved pages, <code>null</code> if
+	 *         it is disabled
+	 */
+	public PreEnhancer getPreEnhancer() {
+		return preEnhancer;
+	}
+
+	/**
+	 * @return the incremental enhancer of edited pages, <code>null</code> if
+	 *         it is disabled
+	 */
+	public IncrementalEnhancer getIncrementalEnhancer() {
+		return incrementalEnhancer;
+	}
+
+	/**
+	 * @return the time budget of page views, <code>null</code> if it is
+	 *         disabled
+	 */
+	public EnhancementBudget getEnhancementBudget() {
+		return enhancementBudget;
+	}
+
+	/**
+	 * @return the enhancer of page batches
+	 */
+	public BatchEnhancer getBatchEnhancer() {
+		return batchEnhancer;
+	}
+
+	/**
+	 * @return true iff the wiki markup of viewed pages is rewritten. In the
+	 *         other modes pages are annotated by the client or by the
+	 *         {@link OntologyTransformation}.
+	 */
+	public boolean isMarkupMode() {
+		return MODE_MARKUP.equals(mode);
+	}
+
+	/**
+	 * @return true iff viewed pages are left unchanged and the clients
+	 *         annotate them with {@link #getConceptHits(XWikiDocument)}
+	 */
+	public boolean isClientMode() {
+		return MODE_CLIENT.equals(mode);
+	}
+
+	/**
+	 * Finds the concepts of a document for clients that annotate the page
+	 * themselves. The result only depends on the document version and the
+	 * ontology, so it is cached for all users.
+	 * 
+	 * @param doc
+	 *            a document
+	 * @return the concepts as JSON, see {@link ConceptHits#toJson()}
+	 */
+	public String getConceptHits(XWikiDocument doc) {
+		OntologySnapshot snapshot = OntologyIndex.get().getSnapshot();
+		String json = conceptHitsCache.get(doc.getDocumentReference(), doc.getLanguage(), doc.getVersion(), snapshot.getVersion());
+		if (json == null) {
+			json = textEnhancer.findConcepts(doc.getContent(), snapshot).toJson();
+			conceptHitsCache.put(doc.getDocumentReference(), doc.getLanguage(), doc.getVersion(), snapshot.getVersion(), json);
+		}
+		return json;
+	}
+
+	/**
+	 * @return the cache of the concepts of pages as JSON
+	 */
+	public EnhancementCache getConceptHitsCache() {
+		return conceptHitsCache;
+	}
+
+	/**
+	 * @return the cache of enhanced page contents
+	 */
+	public EnhancementCache getEnhancementCache() {
+		return enhancementCache;
+	}
+
 	@Override
 	public String getName() {
 		return ID;
@@ -87,6 +302,21 @@ public class OntologyPlugin extends XWikiDefaultPlugin {
 	@Override
 	public void flushCache() {
 		super.flushCache();
+		enhancementCache.clear();
+		conceptHitsCache.clear();
+		if (incrementalEnhancer != null)
+			incrementalEnhancer.clear();
+	}
+
+	/**
+	 * Stops the threads of the plug-in and initializes it again.
+	 */
+	@Override
+	public void flushCache(XWikiContext context) {
+		context.getWiki().getNotificationManager().removeGeneralRule(rule);
+		shutdown();
+		flushCache();
+		init(context);
 	}
 	
 	public boolean isEnabled() {
@@ -25,10 +25,26 @@
  ******************************************************************************/
 package de.csw.xwiki.plugin;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.de.CachingStemmer;
+import org.apache.lucene.analysis.de.Stemmer;
+
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.plugin.PluginApi;
 
+import de.csw.ontology.OntologyIndex;
+import de.csw.ontology.OntologySnapshot;
+
 public class OntologyPluginAPI extends PluginApi<OntologyPlugin> {
+	static final Logger log = Logger.getLogger(OntologyPluginAPI.class);
 	
 	public OntologyPluginAPI(OntologyPlugin plugin, XWikiContext context) {
 		super(plugin, context);
@@ -41,4 +57,183 @@ public class OntologyPluginAPI extends PluginApi<OntologyPlugin> {
 	public void setEnabled(String b) {
 		getProtectedPlugin().setEnabled(Boolean.parseBoolean(b));
 	}
+
+	/**
+	 * Reloads the ontology without interrupting page views. Requires admin
+	 * rights.
+	 */
+	public void reloadOntology() {
+		if (hasAdminRights()) {
+			getProtectedPlugin().reloadOntology(getXWikiContext());
+		}
+	}
+
+	/**
+	 * Enhances the contents of many documents in parallel, e.g., for an
+	 * export of a space. All documents are enhanced with the same ontology.
+	 * The enhancement cache is bypassed, so a large batch does not evict the
+	 * pages being viewed. A batch occupies the batch threads until it is
+	 * done, so it requires programming rights.
+	 * 
+	 * @param documents
+	 *            full names of the documents
+	 * @return the enhanced contents in the order of <code>documents</code>,
+	 *         <code>null</code> for documents that do not exist or must not
+	 *         be viewed by the current user; <code>null</code> without
+	 *         programming rights
+	 */
+	public List<String> enhanceAll(Collection<String> documents) {
+		if (!hasProgrammingRights())
+			return null;
+		final XWikiContext context = getXWikiContext();
+		final OntologySnapshot snapshot = OntologyIndex.get().getSnapshot();
+		final Iterator<String> names = documents.iterator();
+
+		// documents are loaded one by one while the batch proceeds
+		Iterable<String> contents = new Iterable<String>() {
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+					public boolean hasNext() {
+						return names.hasNext();
+					}
+
+					public String next() {
+						String name = names.next();
+						try {
+							if (!context.getWiki().getRightService().hasAccessLevel("view", context.getUser(), name, context))
+								return null;
+							XWikiDocument doc = context.getWiki().getDocument(name, context);
+							if (doc.isNew())
+								return null;
+							return doc.getContent();
+						} catch (XWikiException e) {
+							log.error("Could not load document " + name, e);
+							return null;
+						}
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+		return getProtectedPlugin().getBatchEnhancer().enhanceAll(contents, snapshot);
+	}
+
+	/**
+	 * Finds the concepts of a document for scripts that annotate the rendered
+	 * page themselves (see the client mode of
+	 * {@link de.csw.util.Config#ENHANCEMENT_MODE}). A page rendered with
+	 * <code>xpage=plain</code> can serve the result to the browser.
+	 * 
+	 * @param document
+	 *            full name of the document
+	 * @return the concepts as JSON, see
+	 *         {@link de.csw.ontology.ConceptHits#toJson()}, or
+	 *         <code>null</code> if the document does not exist or must not
+	 *         be viewed by the current user
+	 */
+	public String getConceptHits(String document) {
+		XWikiContext context = getXWikiContext();
+		try {
+			if (!context.getWiki().getRightService().hasAccessLevel("view", context.getUser(), document, context))
+				return null;
+			XWikiDocument doc = context.getWiki().getDocument(document, context);
+			return doc.isNew() ? null : getProtectedPlugin().getConceptHits(doc);
+		} catch (XWikiException e) {
+			log.error("Could not load document " + document, e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return number of page views served from the enhancement cache
+	 */
+	public long getEnhancementCacheHits() {
+		return getProtectedPlugin().getEnhancementCache().getHits();
+	}
+
+	/**
+	 * @return number of page views that had to be enhanced
+	 */
+	public long getEnhancementCacheMisses() {
+		return getProtectedPlugin().getEnhancementCache().getMisses();
+	}
+
+	/**
+	 * @return ratio of page views served from the enhancement cache
+	 */
+	public double getEnhancementCacheHitRate() {
+		return getProtectedPlugin().getEnhancementCache().getHitRate();
+	}
+
+	/**
+	 * @return number of pages in the enhancement cache
+	 */
+	public int getEnhancementCacheSize() {
+		return getProtectedPlugin().getEnhancementCache().size();
+	}
+
+	/**
+	 * @return number of chars of the pages in the enhancement cache
+	 */
+	public long getEnhancementCacheChars() {
+		return getProtectedPlugin().getEnhancementCache().getChars();
+	}
+
+	/**
+	 * @return approximate number of words whose stem was cached, 0 if the
+	 *         stemmer cache is disabled
+	 */
+	public long getStemmerCacheHits() {
+		Stemmer stemmer = OntologyIndex.get().getStemmer();
+		return stemmer instanceof CachingStemmer ? ((CachingStemmer) stemmer).getHits() : 0;
+	}
+
+	/**
+	 * @return approximate number of words that had to be stemmed, 0 if the
+	 *         stemmer cache is disabled
+	 */
+	public long getStemmerCacheMisses() {
+		Stemmer stemmer = OntologyIndex.get().getStemmer();
+		return stemmer instanceof CachingStemmer ? ((CachingStemmer) stemmer).getMisses() : 0;
+	}
+
+	/**
+	 * @return number of page views served unchanged because the enhancement
+	 *         exceeded the time budget, 0 if there is no budget
+	 */
+	public long getEnhancementBudgetOverruns() {
+		EnhancementBudget budget = getProtectedPlugin().getEnhancementBudget();
+		return budget != null ? budget.getOverruns() : 0;
+	}
+
+	/**
+	 * @return the pages that recently exceeded the time budget, with the
+	 *         number of overruns
+	 */
+	public Map<String, Long> getEnhancementBudgetOverrunPages() {
+		EnhancementBudget budget = getProtectedPlugin().getEnhancementBudget();
+		return budget != null ? budget.getPageOverruns() : Collections.<String, Long>emptyMap();
+	}
+
+	/**
+	 * Resets the overrun counters of the time budget. Requires admin rights.
+	 */
+	public void resetEnhancementBudgetOverruns() {
+		EnhancementBudget budget = getProtectedPlugin().getEnhancementBudget();
+		if (budget != null && hasAdminRights()) {
+			budget.resetOverruns();
+		}
+	}
+
+	/**
+	 * Empties the enhancement cache. Requires admin rights.
+	 */
+	public void flushEnhancementCache() {
+		if (hasAdminRights()) {
+			getProtectedPlugin().getEnhancementCache().clear();
+		}
+	}
 }
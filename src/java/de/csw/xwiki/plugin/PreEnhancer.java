@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.xwiki.plugin;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.web.Utils;
+
+import de.csw.ontology.OntologyIndex;
+import de.csw.ontology.OntologySnapshot;
+import de.csw.ontology.XWikiTextEnhancer;
+
+/**
+ * Enhances saved documents in the background and keeps the result in an
+ * {@link EnhancementStore}, so that viewing a page only has to read it.
+ * Contents that were enhanced for another document version or ontology are
+ * not returned; the view falls back to live enhancement and hands the fresh
+ * result back with {@link #storeLater(XWikiDocument, OntologySnapshot, String)}.
+ * <p>
+ * All work runs on a single daemon thread with a bounded queue. If the queue
+ * is full the task is dropped, the page is then enhanced on its next view.
+ * </p>
+ * 
+ * @author rheese
+ * 
+ */
+public class PreEnhancer {
+	static final Logger log = Logger.getLogger(PreEnhancer.class);
+
+	/** maximum number of pending tasks */
+	private static final int QUEUE_SIZE = 1000;
+
+	private final EnhancementStore store;
+
+	private final XWikiTextEnhancer enhancer;
+
+	private final ExecutorService executor;
+
+	/**
+	 * @param store
+	 *            the store for the enhanced contents
+	 * @param enhancer
+	 *            the enhancer used in the background
+	 */
+	public PreEnhancer(EnhancementStore store, XWikiTextEnhancer enhancer) {
+		this.store = store;
+		this.enhancer = enhancer;
+		this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "Ontology pre-enhancement");
+						t.setDaemon(true);
+						t.setPriority(Thread.MIN_PRIORITY);
+						return t;
+					}
+				});
+	}
+
+	/**
+	 * @param doc
+	 *            a document
+	 * @param snapshot
+	 *            the ontology the document is viewed with
+	 * @return the stored enhanced content of the document or
+	 *         <code>null</code> if it is missing or outdated
+	 */
+	public String lookup(XWikiDocument doc, OntologySnapshot snapshot) {
+		return store.load(doc.getDocumentReference().toString(), doc.getLanguage(), doc.getVersion(),
+				snapshot.getFingerprint());
+	}
+
+	/**
+	 * Enhances a document in the background with the current ontology and
+	 * stores the result. Called when the document has been saved.
+	 * 
+	 * @param doc
+	 *            the saved document
+	 */
+	public void enhanceLater(XWikiDocument doc) {
+		final String document = doc.getDocumentReference().toString();
+		final String language = doc.getLanguage();
+		final String version = doc.getVersion();
+		final String content = doc.getContent();
+		submit(document, new Runnable() {
+			public void run() {
+				OntologySnapshot snapshot = OntologyIndex.get().getSnapshot();
+				save(document, language, version, snapshot.getFingerprint(), enhancer.enhance(content, snapshot));
+			}
+		});
+	}
+
+	/**
+	 * Enhances all stored documents again in the background, after the
+	 * ontology has been reloaded. Until a document has been enhanced again,
+	 * its views fall back to live enhancement. The pass is abandoned if the
+	 * ontology is reloaded once more, as that reload starts a pass of its
+	 * own.
+	 * 
+	 * @param context
+	 *            the context of the request, a copy is used to load the
+	 *            documents
+	 */
+	public void enhanceAllLater(XWikiContext context) {
+		final XWikiContext ctx = (XWikiContext) context.clone();
+		final OntologySnapshot snapshot = OntologyIndex.get().getSnapshot();
+		submit("all stored documents", new Runnable() {
+			public void run() {
+				// the documents are loaded outside of a request
+				Execution execution = Utils.getComponent(Execution.class);
+				try {
+					ExecutionContext ec = new ExecutionContext();
+					ec.setProperty("xwikicontext", ctx);
+					Utils.getComponent(ExecutionContextManager.class).initialize(ec);
+					execution.setContext(ec);
+				} catch (ExecutionContextException e) {
+					log.error("Could not initialize the execution context, stored documents are not enhanced again", e);
+					return;
+				}
+				try {
+					enhanceAll(ctx, snapshot);
+				} finally {
+					execution.removeContext();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Enhances the stored documents that were enhanced with another ontology.
+	 */
+	private void enhanceAll(XWikiContext ctx, OntologySnapshot snapshot) {
+		List<EnhancementStore.Entry> entries = store.list();
+		log.info("Enhancing " + entries.size() + " stored documents with the reloaded ontology");
+		int count = 0;
+		for (EnhancementStore.Entry e : entries) {
+			if (Thread.currentThread().isInterrupted() || OntologyIndex.get().getSnapshot() != snapshot) {
+				log.info("Ontology changed, stopped after " + count + " documents");
+				return;
+			}
+			if (e.fingerprint == snapshot.getFingerprint())
+				continue;
+			try {
+				XWikiDocument doc = ctx.getWiki().getDocument(e.document, ctx);
+				if (e.language.length() > 0)
+					doc = doc.getTranslatedDocument(e.language, ctx);
+				if (doc.isNew()) {
+					store.remove(e.document, e.language);
+					continue;
+				}
+				save(e.document, e.language, doc.getVersion(), snapshot.getFingerprint(),
+						enhancer.enhance(doc.getContent(), snapshot));
+				count++;
+			} catch (XWikiException ex) {
+				log.warn("Could not load " + e.document, ex);
+			}
+		}
+		log.info("Enhanced " + count + " stored documents with the reloaded ontology");
+	}
+
+	/**
+	 * Stores an enhanced content in the background, e.g., after a view had
+	 * to enhance the document because the stored content was outdated.
+	 * 
+	 * @param doc
+	 *            the document
+	 * @param snapshot
+	 *            the ontology the content was enhanced with
+	 * @param enhancedContent
+	 *            the enhanced content
+	 */
+	public void storeLater(XWikiDocument doc, final OntologySnapshot snapshot, final String enhancedContent) {
+		final String document = doc.getDocumentReference().toString();
+		final String language = doc.getLanguage();
+		final String version = doc.getVersion();
+		submit(document, new Runnable() {
+			public void run() {
+				save(document, language, version, snapshot.getFingerprint(), enhancedContent);
+			}
+		});
+	}
+
+	/**
+	 * Drops the stored content of a deleted document.
+	 */
+	public void remove(XWikiDocument doc) {
+		store.remove(doc.getDocumentReference().toString(), doc.getLanguage());
+	}
+
+	/**
+	 * Stops the background thread. Pending tasks are discarded.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void submit(String document, Runnable task) {
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			log.warn("Pre-enhancement queue is full, skipping " + document);
+		}
+	}
+
+	private void save(String document, String language, String version, long fingerprint, String content) {
+		try {
+			store.save(document, language, version, fingerprint, content);
+			log.debug("Stored enhancement of " + document + " " + version);
+		} catch (IOException e) {
+			log.error("Could not store enhancement of " + document, e);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.csw.xwiki.rendering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.ImageBlock;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.MacroMarkerBlock;
+import org.xwiki.rendering.block.SpaceBlock;
+import org.xwiki.rendering.block.SpecialSymbolBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.rendering.transformation.AbstractTransformation;
+import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.rendering.transformation.TransformationException;
+
+import de.csw.ontology.ConceptHits;
+import de.csw.ontology.ConceptLinks;
+import de.csw.ontology.OntologyIndex;
+import de.csw.ontology.OntologySnapshot;
+import de.csw.ontology.XWikiTextEnhancer;
+import de.csw.util.Config;
+
+/**
+ * Links the concepts of a page in the parsed XDOM instead of rewriting its
+ * wiki source. Runs of words, spaces and symbols are handed to
+ * {@link XWikiTextEnhancer#findConcepts(String, OntologySnapshot)}, and the
+ * blocks of every recognized label are wrapped in a {@link LinkBlock} to the
+ * search page. Links, images and the output of the velocity, groovy and html
+ * macros are not visited. Labels that do not start and end at word
+ * boundaries of the XDOM are skipped.
+ * <p>
+ * The transformation is active if {@link Config#ENHANCEMENT_MODE} is
+ * "transformation" and it is listed in <code>rendering.transformations</code>
+ * of xwiki.properties. It runs after the macro transformation. The
+ * component may be created before the plug-in has loaded the configuration,
+ * so the plug-in activates it with {@link #setActive(boolean)} whenever it
+ * is (re)initialized.
+ * </p>
+ * 
+ * @author rheese
+ * 
+ */
+@Component
+@Named("ontology")
+@Singleton
+public class OntologyTransformation extends AbstractTransformation {
+	public static final String MODE = "transformation";
+
+	/** macros whose output is not annotated, as with the other modes */
+	private static final List<String> EXCLUDED_MACROS = Arrays.asList("velocity", "groovy", "html");
+
+	/** true iff {@link Config#ENHANCEMENT_MODE} is {@link #MODE} */
+	private static volatile boolean active;
+
+	private final XWikiTextEnhancer enhancer = new XWikiTextEnhancer();
+
+	/**
+	 * Turns the transformation on or off, called by the plug-in with the
+	 * configured mode each time it is initialized.
+	 * 
+	 * @param active
+	 *            true iff {@link Config#ENHANCEMENT_MODE} is {@link #MODE}
+	 */
+	public static void setActive(boolean active) {
+		OntologyTransformation.active = active;
+	}
+
+	public void transform(Block block, TransformationContext context) throws TransformationException {
+		if (!active)
+			return;
+		annotate(block, OntologyIndex.get().getSnapshot());
+	}
+
+	/**
+	 * Links the concepts in the children of <code>parent</code> and visits
+	 * the other children recursively.
+	 */
+	private void annotate(Block parent, OntologySnapshot snapshot) {
+		List<Block> children = parent.getChildren();
+		List<Block> result = new ArrayList<Block>(children.size());
+		boolean changed = false;
+		int runStart = -1;
+		for (int i = 0; i <= children.size(); i++) {
+			Block child = i < children.size() ? children.get(i) : null;
+			if (child != null && isText(child)) {
+				if (runStart < 0)
+					runStart = i;
+				continue;
+			}
+			if (runStart >= 0) {
+				List<Block> run = new ArrayList<Block>(children.subList(runStart, i));
+				List<Block> linked = link(run, snapshot);
+				changed |= linked != run;
+				result.addAll(linked);
+				runStart = -1;
+			}
+			if (child != null) {
+				if (!isExcluded(child))
+					annotate(child, snapshot);
+				result.add(child);
+			}
+		}
+		if (changed)
+			parent.setChildren(result);
+	}
+
+	/**
+	 * @return <code>run</code> if it contains no concept, otherwise the
+	 *         blocks with the concepts wrapped in links
+	 */
+	private List<Block> link(List<Block> run, OntologySnapshot snapshot) {
+		StringBuilder text = new StringBuilder();
+		int[] starts = new int[run.size() + 1];
+		for (int i = 0; i < run.size(); i++) {
+			starts[i] = text.length();
+			appendText(text, run.get(i));
+		}
+		starts[run.size()] = text.length();
+
+		ConceptHits hits = enhancer.findConcepts(text.toString(), snapshot);
+		if (hits.size() == 0)
+			return run;
+
+		ConceptLinks links = snapshot.getConceptLinks();
+		List<Block> result = new ArrayList<Block>(run.size());
+		int next = 0;
+		for (int h = 0; h < hits.size(); h++) {
+			int first = Arrays.binarySearch(starts, hits.getStart(h));
+			int end = Arrays.binarySearch(starts, hits.getEnd(h));
+			if (first < next || end < 0)
+				continue;
+			result.addAll(run.subList(next, first));
+			int state = hits.getState(h);
+			Map<String, String> parameters = new LinkedHashMap<String, String>();
+			parameters.put("class", "similarconcept");
+			parameters.put("title", links.getTitle(state));
+			result.add(new LinkBlock(new ArrayList<Block>(run.subList(first, end)),
+					new ResourceReference(links.getUrl(state), ResourceType.URL), false, parameters));
+			next = end;
+		}
+		if (next == 0)
+			return run;
+		result.addAll(run.subList(next, run.size()));
+		return result;
+	}
+
+	private static boolean isText(Block block) {
+		return block instanceof WordBlock || block instanceof SpaceBlock || block instanceof SpecialSymbolBlock;
+	}
+
+	private static void appendText(StringBuilder sb, Block block) {
+		if (block instanceof WordBlock) {
+			sb.append(((WordBlock) block).getWord());
+		} else if (block instanceof SpecialSymbolBlock) {
+			sb.append(((SpecialSymbolBlock) block).getSymbol());
+		} else {
+			sb.append(' ');
+		}
+	}
+
+	private static boolean isExcluded(Block block) {
+		return block instanceof LinkBlock || block instanceof ImageBlock || block instanceof MacroBlock
+				|| (block instanceof MacroMarkerBlock && EXCLUDED_MACROS.contains(((MacroMarkerBlock) block).getId()));
+	}
+}
@@ -56,14 +56,14 @@ import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.core.LowerCaseFilter;
 import org.apache.lucene.analysis.core.StopFilter;
-import org.apache.lucene.analysis.standard.StandardFilter;
-import org.apache.lucene.analysis.standard.StandardTokenizer;
 import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.analysis.util.WordlistLoader;
 import org.apache.lucene.util.Version;
 
 import de.csw.lucene.ConceptFilter;
+import de.csw.lucene.WikiTokenizer;
 import de.csw.ontology.OntologyIndex;
+import de.csw.ontology.OntologySnapshot;
 
 /**
  * Analyzer for German language. Supports an external list of stopwords (words that
@@ -71,7 +71,14 @@ import de.csw.ontology.OntologyIndex;
  * not be stemmed, but indexed).
  * A default set of stopwords is used unless an alternative list is specified, the
  * exclusion list is empty by default.
- *
+ * <p>
+ * The text is tokenized by a {@link WikiTokenizer}, which skips links and
+ * script macros of the wiki syntax.
+ * The analyzer is meant to be long-lived and shared: the stop word set is built
+ * once, and the default reuse strategy keeps one analysis chain per thread, which
+ * is reset for every new text.
+ * </p>
+ * 
  * 
  * @version $Id$
  */
@@ -95,9 +102,9 @@ public class CSWGermanAnalyzer extends Analyzer {
   };
 
   /**
-   * Contains the stopwords used with the StopFilter.
+   * Contains the stopwords used with the StopFilter. Matched case-insensitively.
    */
-  private Set stopSet = new HashSet();
+  private final CharArraySet stopSet;
 
   /**
    * Contains words that should be indexed but not stemmed.
@@ -109,28 +116,29 @@ public class CSWGermanAnalyzer extends Analyzer {
    * (<code>GERMAN_STOP_WORDS</code>).
    */
   public CSWGermanAnalyzer() {
-    stopSet = StopFilter.makeStopSet(Version.LUCENE_40, GERMAN_STOP_WORDS);
+    this(GERMAN_STOP_WORDS);
   }
 
   /**
    * Builds an analyzer with the given stop words.
    */
   public CSWGermanAnalyzer(String[] stopwords) {
-    stopSet = StopFilter.makeStopSet(Version.LUCENE_40, stopwords);
+    stopSet = CharArraySet.unmodifiableSet(StopFilter.makeStopSet(Version.LUCENE_40, stopwords, true));
   }
 
   /**
    * Builds an analyzer with the given stop words.
    */
   public CSWGermanAnalyzer(Map stopwords) {
-    stopSet = new HashSet(stopwords.keySet());
+    stopSet = CharArraySet.unmodifiableSet(new CharArraySet(Version.LUCENE_40, stopwords.keySet(), true));
   }
 
   /**
    * Builds an analyzer with the given stop words.
    */
   public CSWGermanAnalyzer(File stopwords) throws IOException {
-    stopSet = WordlistLoader.getWordSet(new FileReader(stopwords), Version.LUCENE_40);
+    stopSet = CharArraySet.unmodifiableSet(new CharArraySet(Version.LUCENE_40,
+        WordlistLoader.getWordSet(new FileReader(stopwords), Version.LUCENE_40), true));
   }
 
   /**
@@ -154,15 +162,27 @@ public class CSWGermanAnalyzer extends Analyzer {
     exclusionSet = WordlistLoader.getWordSet(new FileReader(exclusionlist), Version.LUCENE_40);
   }
 
+  /**
+   * Same as {@link #tokenStream(String, Reader)}, but the concepts are matched
+   * against the given ontology snapshot, so that they can be resolved against
+   * the same snapshot afterwards.
+   *
+   * @return the last filter of the analysis chain
+   */
+  public ConceptFilter tokenStream(String fieldName, Reader reader, OntologySnapshot snapshot) throws IOException {
+    ConceptFilter filter = (ConceptFilter) tokenStream(fieldName, reader);
+    filter.setSnapshot(snapshot);
+    return filter;
+  }
+
 	@Override
 	protected TokenStreamComponents createComponents(String fieldName,
 			Reader reader)
 	{
-		Tokenizer source = new StandardTokenizer(Version.LUCENE_40, reader);
+		Tokenizer source = new WikiTokenizer(reader);
 
-		TokenStream result = new StandardFilter(Version.LUCENE_40, source);
-	    result = new LowerCaseFilter(Version.LUCENE_40, result);
-	    result = new StopFilter(Version.LUCENE_40, result, new CharArraySet(Version.LUCENE_40, stopSet, true));
+		TokenStream result = new LowerCaseFilter(Version.LUCENE_40, source);
+	    result = new StopFilter(Version.LUCENE_40, result, stopSet);
 	    result = new GermanStemFilter(result/*, exclusionSet*/);
 	    result = new ConceptFilter(result, OntologyIndex.get());
 	    
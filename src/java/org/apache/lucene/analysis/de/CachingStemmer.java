@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.apache.lucene.analysis.de;
+
+/**
+ * A {@link Stemmer} that caches the stems computed by another stemmer. Wiki
+ * text repeats the same word forms over and over, so most words are stemmed
+ * by a single hash probe.
+ * <p>
+ * The cache is a fixed size, direct mapped table: a new word replaces the
+ * word in its slot. Entries are immutable and published without locking, so
+ * the stemmer can be shared by all threads. The wrapped stemmer must be
+ * thread-safe as well.
+ * </p>
+ * <p>
+ * Hits and misses are counted in stripes selected by the thread id, so
+ * threads stemming in parallel don't write to the same cache line. The
+ * increments are not atomic, the counts are approximate.
+ * </p>
+ * 
+ * @author rheese
+ * 
+ */
+public class CachingStemmer implements Stemmer {
+
+	/** the stemmer that computes the stems on a cache miss */
+	private final Stemmer stemmer;
+
+	/** slot => cached word; racy reads are fine as entries are immutable */
+	private final Entry[] table;
+	private final int mask;
+
+	/** number of counter stripes, a power of two */
+	private static final int STRIPES = 16;
+
+	/** longs per stripe, so stripes are 128 bytes apart */
+	private static final int PAD = 16;
+
+	/** stripe => hits at offset 0, misses at offset 1 */
+	private final long[] counts = new long[STRIPES * PAD];
+
+	/**
+	 * @param stemmer
+	 *            the stemmer to cache
+	 * @param size
+	 *            number of words to keep, rounded up to a power of two
+	 */
+	public CachingStemmer(Stemmer stemmer, int size) {
+		if (size <= 0)
+			throw new IllegalArgumentException("Cache size must be positive: " + size);
+		int capacity = Integer.highestOneBit(size);
+		if (capacity < size)
+			capacity <<= 1;
+		this.stemmer = stemmer;
+		this.table = new Entry[capacity];
+		this.mask = capacity - 1;
+	}
+
+	public String stem(String term) {
+		int hash = spread(term.hashCode());
+		int slot = hash & mask;
+		Entry e = table[slot];
+		int stripe = stripe();
+		if (e != null && e.hash == hash && e.term.equals(term)) {
+			counts[stripe]++;
+			return e.stem;
+		}
+		counts[stripe + 1]++;
+		String stem = stemmer.stem(term);
+		table[slot] = new Entry(term, stem, hash);
+		return stem;
+	}
+
+	public int stem(char[] buffer, int length) {
+		int hash = spread(hashCode(buffer, length));
+		int slot = hash & mask;
+		Entry e = table[slot];
+		int stripe = stripe();
+		if (e != null && e.hash == hash && e.matches(buffer, length)) {
+			counts[stripe]++;
+			int n = e.stem.length();
+			e.stem.getChars(0, n, buffer, 0);
+			return n;
+		}
+		counts[stripe + 1]++;
+		String term = new String(buffer, 0, length);
+		int n = stemmer.stem(buffer, length);
+		table[slot] = new Entry(term, new String(buffer, 0, n), hash);
+		return n;
+	}
+
+	/**
+	 * @return number of words the cache can hold
+	 */
+	public int getSize() {
+		return table.length;
+	}
+
+	/**
+	 * @return approximate number of words found in the cache
+	 */
+	public long getHits() {
+		return sum(0);
+	}
+
+	/**
+	 * @return approximate number of words stemmed by the wrapped stemmer
+	 */
+	public long getMisses() {
+		return sum(1);
+	}
+
+	private long sum(int offset) {
+		long sum = 0;
+		for (int i = offset; i < counts.length; i += PAD) {
+			sum += counts[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * @return index of the counters of the current thread
+	 */
+	private static int stripe() {
+		return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PAD;
+	}
+
+	/**
+	 * Same as {@link String#hashCode()}, so a word has the same slot as a
+	 * <tt>char[]</tt> and as a String.
+	 */
+	private static int hashCode(char[] buffer, int length) {
+		int h = 0;
+		for (int i = 0; i < length; i++) {
+			h = 31 * h + buffer[i];
+		}
+		return h;
+	}
+
+	/**
+	 * Mixes the high bits into the low ones, which select the slot.
+	 */
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public String toString() {
+		return "CachingStemmer[size=" + table.length + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+	}
+
+	/**
+	 * A cached word and its stem.
+	 */
+	private static final class Entry {
+		final String term;
+		final String stem;
+		final int hash;
+
+		Entry(String term, String stem, int hash) {
+			this.term = term;
+			this.stem = stem;
+			this.hash = hash;
+		}
+
+		boolean matches(char[] buffer, int length) {
+			if (term.length() != length)
+				return false;
+			for (int i = 0; i < length; i++) {
+				if (term.charAt(i) != buffer[i])
+					return false;
+			}
+			return true;
+		}
+	}
+}
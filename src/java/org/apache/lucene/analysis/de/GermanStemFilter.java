@@ -25,12 +25,14 @@ import org.apache.lucene.analysis.miscellaneous.KeywordMarkerFilter;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
 
+import de.csw.ontology.OntologyIndex;
+
 /**
  * A {@link TokenFilter} that stems German words. 
  * <p>
  * It supports a table of words that should
  * not be stemmed at all. The stemmer used can be changed at runtime after the
- * filter object is created (as long as it is a {@link GermanStemmer}).
+ * filter object is created. Terms are stemmed in place in the term buffer.
  * </p>
  * <p>
  * To prevent terms from being stemmed use an instance of
@@ -42,9 +44,10 @@ import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
 public final class GermanStemFilter extends TokenFilter
 {
     /**
-     * The actual token in the input stream.
+     * The stemmer, shared with the ontology index so that tokens and labels
+     * are stemmed the same way.
      */
-    private GermanStemmer stemmer = new GermanStemmer();
+    private Stemmer stemmer = OntologyIndex.get().getStemmer();
 
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
     private final KeywordAttribute keywordAttr = addAttribute(KeywordAttribute.class);
@@ -64,13 +67,11 @@ public final class GermanStemFilter extends TokenFilter
     @Override
     public boolean incrementToken() throws IOException {
       if (input.incrementToken()) {
-        String term = termAtt.toString();
-
         if (!keywordAttr.isKeyword()) {
-          String s = stemmer.stem(term);
-          // If not stemmed, don't waste the time adjusting the token.
-          if ((s != null) && !s.equals(term))
-            termAtt.setEmpty().append(s);
+          final int length = termAtt.length();
+          // the stem may be longer than the term, see Stemmer#stem(char[], int)
+          final char[] buffer = termAtt.resizeBuffer(2 * length);
+          termAtt.setLength(stemmer.stem(buffer, length));
         }
         return true;
       } else {
@@ -79,9 +80,9 @@ public final class GermanStemFilter extends TokenFilter
     }
 
     /**
-     * Set a alternative/custom {@link GermanStemmer} for this filter.
+     * Set a alternative/custom {@link Stemmer} for this filter.
      */
-    public void setStemmer( GermanStemmer stemmer )
+    public void setStemmer( Stemmer stemmer )
     {
       if ( stemmer != null ) {
         this.stemmer = stemmer;
@@ -25,8 +25,6 @@
  ******************************************************************************/
 package org.apache.lucene.analysis.de;
 
-import org.apache.commons.lang.StringUtils;
-
 import de.csw.ontology.OntologyIndex;
 
 // This file is encoded in UTF-8
@@ -52,24 +50,19 @@ import de.csw.ontology.OntologyIndex;
  * A stemmer for German words. The algorithm is based on the report
  * "A Fast and Simple Stemming Algorithm for German Words" by J&ouml;rg Caumanns
  * (joerg.caumanns at isst.fhg.de).
- * 
+ * <p>
+ * The stemmer works in place on a <tt>char[]</tt> and keeps no state between
+ * calls, so a single instance can be shared by all threads.
+ * </p>
  * 
  * @version $Id$
  */
 public class GermanStemmer implements Stemmer {
-	/**
-	 * Buffer for the terms while stemming them.
-	 */
-	private StringBuffer sb = new StringBuffer();
-
-	/**
-	 * Amount of characters that are removed with <tt>substitute()</tt> while
-	 * stemming.
-	 */
-	private int substCount = 0;
 
 	/**
 	 * Stems the given term term to an unique <tt>discriminator</tt>.
+	 * Whitespace separated fragments are stemmed separately and joined with
+	 * {@link OntologyIndex#PREFIX_SEPARATOR}.
 	 * 
 	 * @param term
 	 *            The term that should be stemmed.
@@ -77,39 +70,124 @@ public class GermanStemmer implements Stemmer {
 	 */
 	public String stem(String term) {
 		// TODO we should use a global splitter for terms being used in OntologyIndex and here
-		String[] frags = StringUtils.split(term);
-		
-		for (int i = 0; i < frags.length; i++) {
-			frags[i] = stemSingleTerm(frags[i]);
+		int n = term.length();
+		// every fragment grows by at most one char per 'ß'
+		char[] buffer = new char[2 * n];
+		int length = 0;
+		int i = 0;
+		while (i < n) {
+			while (i < n && Character.isWhitespace(term.charAt(i)))
+				i++;
+			if (i == n)
+				break;
+			int start = i;
+			while (i < n && !Character.isWhitespace(term.charAt(i)))
+				i++;
+			if (length > 0)
+				buffer[length++] = OntologyIndex.PREFIX_SEPARATOR;
+			term.getChars(start, i, buffer, length);
+			length += stem(buffer, length, i - start);
 		}
-		return StringUtils.join(frags, OntologyIndex.PREFIX_SEPARATOR);
+		return new String(buffer, 0, length);
 	}
 
 	/**
-	 * Stems the given term consisting of a single term to an unique
-	 * <tt>discriminator</tt>.
+	 * Stems a single word in place. The stem is longer than the word by one
+	 * character for every 'ß', so <tt>buffer</tt> must provide at least
+	 * <tt>2 * length</tt> characters.
 	 * 
-	 * @param term
-	 *            The term that should be stemmed.
-	 * @return Discriminator for <tt>term</tt>
+	 * @param buffer
+	 *            buffer holding the word in its first <tt>length</tt> chars
+	 * @param length
+	 *            length of the word
+	 * @return length of the stem
+	 */
+	public int stem(char[] buffer, int length) {
+		return stem(buffer, 0, length);
+	}
+
+	/**
+	 * Stems the word in <tt>s[off..off+len)</tt> in place.
+	 * 
+	 * @return length of the stem
 	 */
-	protected String stemSingleTerm(String term) {
-		if (term == null)
-			return null;
+	private int stem(char[] s, int off, int len) {
 		// Use lowercase for medium stemming.
-		term = term.toLowerCase();
-		if (!isStemmable(term))
-			return term;
-		// Reset the StringBuffer.
-		sb.delete(0, sb.length());
-		sb.insert(0, term);
+		for (int c = off; c < off + len; c++) {
+			s[c] = Character.toLowerCase(s[c]);
+		}
+		if (len == 0 || !isStemmable(s, off, len))
+			return len;
 		// Stemming starts here...
-		substitute(sb);
-		strip(sb);
-		optimize(sb);
-		resubstitute(sb);
-		removeParticleDenotion(sb);
-		return sb.toString();
+		int substCount = 0;
+
+		// Do some substitutions for the term to reduce overstemming:
+		// - Substitute Umlauts with their corresponding vowel: äöü -> aou, "ß"
+		// is substituted by "ss"
+		// - Substitute a second char of a pair of equal characters with an
+		// asterisk: ?? -> ?*
+		// - Substitute some common character combinations with a token:
+		// sch/ch/ei/ie/ig/st -> $/§/%/&/#/!
+		// substCount is the amount of characters that are removed by the
+		// substitution, it is taken into account while stripping.
+		for (int c = 0; c < len; c++) {
+			int i = off + c;
+			// Replace the second char of a pair of the equal characters with an
+			// asterisk
+			if (c > 0 && s[i] == s[i - 1]) {
+				s[i] = '*';
+			}
+			// Substitute Umlauts.
+			else if (s[i] == 'ä') {
+				s[i] = 'a';
+			} else if (s[i] == 'ö') {
+				s[i] = 'o';
+			} else if (s[i] == 'ü') {
+				s[i] = 'u';
+			}
+			// Fix bug so that 'ß' at the end of a word is replaced.
+			else if (s[i] == 'ß') {
+				s[i] = 's';
+				len = insert(s, off, len, c + 1, 's');
+				substCount++;
+			}
+			// Take care that at least one character is left left side from the
+			// current one
+			if (c < len - 1) {
+				// Masking several common character combinations with an token
+				if ((c < len - 2) && s[i] == 's' && s[i + 1] == 'c' && s[i + 2] == 'h') {
+					s[i] = '$';
+					len = delete(s, off, len, c + 1, 2);
+					substCount = +2;
+				} else if (s[i] == 'c' && s[i + 1] == 'h') {
+					s[i] = '§';
+					len = delete(s, off, len, c + 1, 1);
+					substCount++;
+				} else if (s[i] == 'e' && s[i + 1] == 'i') {
+					s[i] = '%';
+					len = delete(s, off, len, c + 1, 1);
+					substCount++;
+				} else if (s[i] == 'i' && s[i + 1] == 'e') {
+					s[i] = '&';
+					len = delete(s, off, len, c + 1, 1);
+					substCount++;
+				} else if (s[i] == 'i' && s[i + 1] == 'g') {
+					s[i] = '#';
+					len = delete(s, off, len, c + 1, 1);
+					substCount++;
+				} else if (s[i] == 's' && s[i + 1] == 't') {
+					s[i] = '!';
+					len = delete(s, off, len, c + 1, 1);
+					substCount++;
+				}
+			}
+		}
+
+		len = strip(s, off, len, substCount);
+		len = optimize(s, off, len, substCount);
+		len = resubstitute(s, off, len);
+		len = removeParticleDenotion(s, off, len);
+		return len;
 	}
 
 	/**
@@ -117,9 +195,9 @@ public class GermanStemmer implements Stemmer {
 	 * 
 	 * @return true if, and only if, the given term consists in letters.
 	 */
-	private boolean isStemmable(String term) {
-		for (int c = 0; c < term.length(); c++) {
-			if (!Character.isLetter(term.charAt(c)))
+	private static boolean isStemmable(char[] s, int off, int len) {
+		for (int c = off; c < off + len; c++) {
+			if (!Character.isLetter(s[c]))
 				return false;
 		}
 		return true;
@@ -132,165 +210,119 @@ public class GermanStemmer implements Stemmer {
 	 * some overstemming, and way more irregular stems, but still provides
 	 * unique. discriminators in the most of those cases. The algorithm is
 	 * context free, except of the length restrictions.
+	 * 
+	 * @return the new length of the term
 	 */
-	private void strip(StringBuffer buffer) {
+	private static int strip(char[] s, int off, int len, int substCount) {
 		boolean doMore = true;
-		while (doMore && buffer.length() > 3) {
-			if ((buffer.length() + substCount > 5)
-					&& buffer.substring(buffer.length() - 2, buffer.length()).equals("nd")) {
-				buffer.delete(buffer.length() - 2, buffer.length());
-			} else if ((buffer.length() + substCount > 4)
-					&& buffer.substring(buffer.length() - 2, buffer.length()).equals("em")) {
-				buffer.delete(buffer.length() - 2, buffer.length());
-			} else if ((buffer.length() + substCount > 4)
-					&& buffer.substring(buffer.length() - 2, buffer.length()).equals("er")) {
-				buffer.delete(buffer.length() - 2, buffer.length());
-			} else if (buffer.charAt(buffer.length() - 1) == 'e') {
-				buffer.deleteCharAt(buffer.length() - 1);
-			} else if (buffer.charAt(buffer.length() - 1) == 's') {
-				buffer.deleteCharAt(buffer.length() - 1);
-			} else if (buffer.charAt(buffer.length() - 1) == 'n') {
-				buffer.deleteCharAt(buffer.length() - 1);
+		while (doMore && len > 3) {
+			if ((len + substCount > 5) && endsWith(s, off, len, 'n', 'd')) {
+				len -= 2;
+			} else if ((len + substCount > 4) && endsWith(s, off, len, 'e', 'm')) {
+				len -= 2;
+			} else if ((len + substCount > 4) && endsWith(s, off, len, 'e', 'r')) {
+				len -= 2;
+			} else if (s[off + len - 1] == 'e') {
+				len--;
+			} else if (s[off + len - 1] == 's') {
+				len--;
+			} else if (s[off + len - 1] == 'n') {
+				len--;
 			}
 			// "t" occurs only as suffix of verbs.
-			else if (buffer.charAt(buffer.length() - 1) == 't') {
-				buffer.deleteCharAt(buffer.length() - 1);
+			else if (s[off + len - 1] == 't') {
+				len--;
 			} else {
 				doMore = false;
 			}
 		}
+		return len;
 	}
 
 	/**
 	 * Does some optimizations on the term. This optimisations are contextual.
+	 * 
+	 * @return the new length of the term
 	 */
-	private void optimize(StringBuffer buffer) {
+	private static int optimize(char[] s, int off, int len, int substCount) {
 		// Additional step for female plurals of professions and inhabitants.
-		if (buffer.length() > 5
-				&& buffer.substring(buffer.length() - 5, buffer.length()).equals("erin*")) {
-			buffer.deleteCharAt(buffer.length() - 1);
-			strip(buffer);
+		if (len > 5 && s[off + len - 5] == 'e' && s[off + len - 4] == 'r'
+				&& s[off + len - 3] == 'i' && s[off + len - 2] == 'n'
+				&& s[off + len - 1] == '*') {
+			len--;
+			len = strip(s, off, len, substCount);
 		}
 		// Additional step for irregular plural nouns like "Matrizen -> Matrix".
-		if (buffer.charAt(buffer.length() - 1) == ('z')) {
-			buffer.setCharAt(buffer.length() - 1, 'x');
+		if (len > 0 && s[off + len - 1] == 'z') {
+			s[off + len - 1] = 'x';
 		}
+		return len;
 	}
 
 	/**
 	 * Removes a particle denotion ("ge") from a term.
+	 * 
+	 * @return the new length of the term
 	 */
-	private void removeParticleDenotion(StringBuffer buffer) {
-		if (buffer.length() > 4) {
-			for (int c = 0; c < buffer.length() - 3; c++) {
-				if (buffer.substring(c, c + 4).equals("gege")) {
-					buffer.delete(c, c + 2);
-					return;
+	private static int removeParticleDenotion(char[] s, int off, int len) {
+		if (len > 4) {
+			for (int c = off; c < off + len - 3; c++) {
+				if (s[c] == 'g' && s[c + 1] == 'e' && s[c + 2] == 'g' && s[c + 3] == 'e') {
+					return delete(s, off, len, c - off, 2);
 				}
 			}
 		}
+		return len;
 	}
 
 	/**
-	 * Do some substitutions for the term to reduce overstemming:
+	 * Undoes the changes made by the substitution. That are character pairs
+	 * and character combinations. Umlauts will remain as their corresponding
+	 * vowel, as "ß" remains as "ss".
 	 * 
-	 * - Substitute Umlauts with their corresponding vowel: äöü -> aou, "ß" is
-	 * substituted by "ss" - Substitute a second char of a pair of equal
-	 * characters with an asterisk: ?? -> ?* - Substitute some common character
-	 * combinations with a token: sch/ch/ei/ie/ig/st -> $/§/%/&/#/!
+	 * @return the new length of the term
 	 */
-	private void substitute(StringBuffer buffer) {
-		substCount = 0;
-		for (int c = 0; c < buffer.length(); c++) {
-			// Replace the second char of a pair of the equal characters with an
-			// asterisk
-			if (c > 0 && buffer.charAt(c) == buffer.charAt(c - 1)) {
-				buffer.setCharAt(c, '*');
-			}
-			// Substitute Umlauts.
-			else if (buffer.charAt(c) == 'ä') {
-				buffer.setCharAt(c, 'a');
-			} else if (buffer.charAt(c) == 'ö') {
-				buffer.setCharAt(c, 'o');
-			} else if (buffer.charAt(c) == 'ü') {
-				buffer.setCharAt(c, 'u');
-			}
-			// Fix bug so that 'ß' at the end of a word is replaced.
-			else if (buffer.charAt(c) == 'ß') {
-				buffer.setCharAt(c, 's');
-				buffer.insert(c + 1, 's');
-				substCount++;
-			}
-			// Take care that at least one character is left left side from the
-			// current one
-			if (c < buffer.length() - 1) {
-				// Masking several common character combinations with an token
-				if ((c < buffer.length() - 2) && buffer.charAt(c) == 's'
-						&& buffer.charAt(c + 1) == 'c'
-						&& buffer.charAt(c + 2) == 'h') {
-					buffer.setCharAt(c, '$');
-					buffer.delete(c + 1, c + 3);
-					substCount = +2;
-				} else if (buffer.charAt(c) == 'c'
-						&& buffer.charAt(c + 1) == 'h') {
-					buffer.setCharAt(c, '§');
-					buffer.deleteCharAt(c + 1);
-					substCount++;
-				} else if (buffer.charAt(c) == 'e'
-						&& buffer.charAt(c + 1) == 'i') {
-					buffer.setCharAt(c, '%');
-					buffer.deleteCharAt(c + 1);
-					substCount++;
-				} else if (buffer.charAt(c) == 'i'
-						&& buffer.charAt(c + 1) == 'e') {
-					buffer.setCharAt(c, '&');
-					buffer.deleteCharAt(c + 1);
-					substCount++;
-				} else if (buffer.charAt(c) == 'i'
-						&& buffer.charAt(c + 1) == 'g') {
-					buffer.setCharAt(c, '#');
-					buffer.deleteCharAt(c + 1);
-					substCount++;
-				} else if (buffer.charAt(c) == 's'
-						&& buffer.charAt(c + 1) == 't') {
-					buffer.setCharAt(c, '!');
-					buffer.deleteCharAt(c + 1);
-					substCount++;
-				}
+	private static int resubstitute(char[] s, int off, int len) {
+		for (int c = 0; c < len; c++) {
+			int i = off + c;
+			if (s[i] == '*') {
+				s[i] = s[i - 1];
+			} else if (s[i] == '$') {
+				s[i] = 's';
+				len = insert(s, off, len, c + 1, 'c');
+				len = insert(s, off, len, c + 2, 'h');
+			} else if (s[i] == '§') {
+				s[i] = 'c';
+				len = insert(s, off, len, c + 1, 'h');
+			} else if (s[i] == '%') {
+				s[i] = 'e';
+				len = insert(s, off, len, c + 1, 'i');
+			} else if (s[i] == '&') {
+				s[i] = 'i';
+				len = insert(s, off, len, c + 1, 'e');
+			} else if (s[i] == '#') {
+				s[i] = 'i';
+				len = insert(s, off, len, c + 1, 'g');
+			} else if (s[i] == '!') {
+				s[i] = 's';
+				len = insert(s, off, len, c + 1, 't');
 			}
 		}
+		return len;
 	}
 
-	/**
-	 * Undoes the changes made by substitute(). That are character pairs and
-	 * character combinations. Umlauts will remain as their corresponding vowel,
-	 * as "ß" remains as "ss".
-	 */
-	private void resubstitute(StringBuffer buffer) {
-		for (int c = 0; c < buffer.length(); c++) {
-			if (buffer.charAt(c) == '*') {
-				char x = buffer.charAt(c - 1);
-				buffer.setCharAt(c, x);
-			} else if (buffer.charAt(c) == '$') {
-				buffer.setCharAt(c, 's');
-				buffer.insert(c + 1, new char[] { 'c', 'h' }, 0, 2);
-			} else if (buffer.charAt(c) == '§') {
-				buffer.setCharAt(c, 'c');
-				buffer.insert(c + 1, 'h');
-			} else if (buffer.charAt(c) == '%') {
-				buffer.setCharAt(c, 'e');
-				buffer.insert(c + 1, 'i');
-			} else if (buffer.charAt(c) == '&') {
-				buffer.setCharAt(c, 'i');
-				buffer.insert(c + 1, 'e');
-			} else if (buffer.charAt(c) == '#') {
-				buffer.setCharAt(c, 'i');
-				buffer.insert(c + 1, 'g');
-			} else if (buffer.charAt(c) == '!') {
-				buffer.setCharAt(c, 's');
-				buffer.insert(c + 1, 't');
-			}
-		}
+	private static boolean endsWith(char[] s, int off, int len, char a, char b) {
+		return s[off + len - 2] == a && s[off + len - 1] == b;
+	}
+
+	private static int delete(char[] s, int off, int len, int at, int count) {
+		System.arraycopy(s, off + at + count, s, off + at, len - at - count);
+		return len - count;
 	}
 
+	private static int insert(char[] s, int off, int len, int at, char a) {
+		System.arraycopy(s, off + at, s, off + at + 1, len - at);
+		s[off + at] = a;
+		return len + 1;
+	}
 }
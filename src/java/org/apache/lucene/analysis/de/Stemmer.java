@@ -40,4 +40,18 @@ public interface Stemmer {
 	 * @return Discriminator for <tt>term</tt>
 	 */
 	public String stem(String term);
+
+	/**
+	 * Stems a single word in place. Implementations must be safe to use from
+	 * several threads at once.
+	 * 
+	 * @param buffer
+	 *            buffer holding the word in its first <tt>length</tt> chars;
+	 *            it must provide at least <tt>2 * length</tt> chars as the
+	 *            stem may be longer than the word
+	 * @param length
+	 *            length of the word
+	 * @return length of the stem
+	 */
+	public int stem(char[] buffer, int length);
 }
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.nbi.ontology.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+
+import org.apache.log4j.Logger;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import de.csw.ontology.ConceptHits;
+import de.csw.ontology.OntologyIndex;
+import de.csw.ontology.OntologySnapshot;
+import de.csw.ontology.XWikiTextEnhancer;
+
+/**
+ * Tests the concept recognition of the analysis chain, see
+ * {@link de.csw.lucene.ConceptFilter}.
+ */
+public class ConceptFilterTest extends TestBase {
+	static Logger log = Logger.getLogger(ConceptFilterTest.class);
+
+	OntologyIndex index = OntologyIndex.get();
+
+	XWikiTextEnhancer enhancer = new XWikiTextEnhancer();
+
+	@BeforeClass
+	public void loadOntology() {
+		loadDomainOntology();
+	}
+
+	/**
+	 * @return the recognized labels of the text, separated by '|'
+	 */
+	String concepts(String text, OntologySnapshot snapshot) {
+		ConceptHits hits = enhancer.findConcepts(text, snapshot);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < hits.size(); i++) {
+			if (i > 0)
+				sb.append('|');
+			sb.append(hits.getText(i));
+		}
+		return sb.toString();
+	}
+
+	String concepts(String text) {
+		return concepts(text, index.getSnapshot());
+	}
+
+	/**
+	 * Test, if the longest label is taken and its tokens are merged.
+	 */
+	@Test(groups = { "functest" })
+	public void longestMatch() {
+		Assert.assertEquals("pflanzliche Gewürze", concepts("Viele pflanzliche Gewürze."));
+		Assert.assertEquals("Wurzeln und Knollen|Ingwer", concepts("Wurzeln und Knollen wie Ingwer"));
+	}
+
+	/**
+	 * Test, if a label inside a failed longer candidate is still found.
+	 */
+	@Test(groups = { "functest" })
+	public void shorterLabelInsideCandidate() {
+		Assert.assertEquals("Gewürzen", concepts("Wurzeln und Gewürzen"));
+		Assert.assertEquals("Kerbel|Dill", concepts("Kerbel Dill"));
+		Assert.assertEquals("", concepts("pflanzliche"));
+	}
+
+	/**
+	 * Test, if the hits are reported with their text in the order they occur.
+	 */
+	@Test(groups = { "functest" })
+	public void json() {
+		String json = enhancer.findConcepts("Kerbel und **Dill**, dann Kerbel", index.getSnapshot()).toJson();
+		Assert.assertTrue(json, json.endsWith("\"hits\":[[\"Kerbel\",0],[\"Dill\",1],[\"Kerbel\",0]]}"));
+		Assert.assertEquals(2, json.split("\"concepts\"").length - 1);
+	}
+
+	/**
+	 * Test, if a label is not matched across a skipped link or macro, even
+	 * if a stop word follows it.
+	 */
+	@Test(groups = { "functest" })
+	public void noMatchAcrossRegions() {
+		Assert.assertEquals("Gewürze", concepts("pflanzliche [[x>>Main.X]] Gewürze"));
+		Assert.assertEquals("Gewürze", concepts("pflanzliche {{html}}<br/>{{/html}} der Gewürze"));
+		Assert.assertEquals("pflanzliche Gewürze", concepts("[[x>>Main.X]] pflanzliche Gewürze"));
+	}
+
+	/**
+	 * Test, if the concepts are matched against the snapshot of the caller,
+	 * even if another one has been published since.
+	 */
+	@Test(groups = { "functest" })
+	public void callerSnapshot() throws IOException {
+		OntologySnapshot domain = index.getSnapshot();
+		String owl = "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\""
+				+ " xmlns:rdfs=\"http://www.w3.org/2000/01/rdf-schema#\""
+				+ " xmlns:owl=\"http://www.w3.org/2002/07/owl#\">"
+				+ "<owl:Class rdf:about=\"http://example.org/test#Strafrecht\">"
+				+ "<rdfs:label xml:lang=\"de\">Strafrecht</rdfs:label></owl:Class>"
+				+ "</rdf:RDF>";
+		try {
+			index.reset();
+			index.load(new ByteArrayInputStream(owl.getBytes("UTF-8")));
+
+			String text = "Kerbel und Strafrecht";
+			Assert.assertEquals("Strafrecht", concepts(text));
+			Assert.assertEquals("Kerbel", concepts(text, domain));
+			Assert.assertTrue(enhancer.enhance(text, domain).startsWith("[[Kerbel>>"));
+			Assert.assertTrue(enhancer.enhance(text).startsWith("Kerbel und [[Strafrecht>>"));
+		} finally {
+			loadDomainOntology();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.nbi.ontology.test;
+
+import org.junit.Assert;
+
+import org.testng.annotations.Test;
+
+import de.csw.ontology.ConceptTrie;
+import de.csw.ontology.OntologyIndex;
+
+/**
+ * Tests the {@link ConceptTrie} over stemmed label fragments.
+ */
+public class ConceptTrieTest {
+
+	static ConceptTrie trie() {
+		ConceptTrie.Builder b = new ConceptTrie.Builder();
+		b.add(new String[] { "pflanzlich", "gewurz" }, 1);
+		b.add(new String[] { "gewurz" }, 2);
+		b.add(new String[] { "pflanzlich", "gewurz" }, 3);
+		b.add(new String[] { "pflanzlich", "gewurz" }, 1);
+		b.add(new String[] { "wurzel", "und", "knoll" }, 4);
+		return b.build();
+	}
+
+	@Test(groups = { "functest" })
+	public void walk() {
+		ConceptTrie trie = trie();
+		int prefix = trie.step(ConceptTrie.ROOT, "pflanzlich");
+		Assert.assertTrue(prefix != ConceptTrie.NONE);
+		Assert.assertTrue(trie.hasArcs(prefix));
+		Assert.assertFalse(trie.isFinal(prefix));
+		Assert.assertEquals(0, trie.getConcepts(prefix).length);
+
+		int label = trie.step(prefix, "gewurz");
+		Assert.assertTrue(trie.isFinal(label));
+		Assert.assertFalse(trie.hasArcs(label));
+		// a concept is listed once per label
+		Assert.assertArrayEquals(new int[] { 1, 3 }, trie.getConcepts(label));
+		Assert.assertEquals("pflanzlich" + OntologyIndex.PREFIX_SEPARATOR + "gewurz", trie.getPath(label));
+
+		// the same stem leads to another state from the root
+		int single = trie.step(ConceptTrie.ROOT, "gewurz");
+		Assert.assertTrue(single != label);
+		Assert.assertArrayEquals(new int[] { 2 }, trie.getConcepts(single));
+		Assert.assertEquals("", trie.getPath(ConceptTrie.ROOT));
+
+		// root, pflanzlich, pflanzlich gewurz, gewurz, wurzel, wurzel und, wurzel und knoll
+		Assert.assertEquals(7, trie.size());
+	}
+
+	@Test(groups = { "functest" })
+	public void noArc() {
+		ConceptTrie trie = trie();
+		Assert.assertEquals(ConceptTrie.NONE, trie.step(ConceptTrie.ROOT, "und"));
+		Assert.assertEquals(ConceptTrie.NONE, trie.step(ConceptTrie.ROOT, "dill"));
+		// NONE is passed through
+		Assert.assertEquals(ConceptTrie.NONE, trie.step(ConceptTrie.NONE, "gewurz"));
+		Assert.assertFalse(trie.isFinal(ConceptTrie.NONE));
+		Assert.assertFalse(trie.hasArcs(ConceptTrie.NONE));
+		Assert.assertEquals(0, trie.getConcepts(ConceptTrie.NONE).length);
+	}
+
+	/**
+	 * Test, if stems are looked up from a slice of a buffer.
+	 */
+	@Test(groups = { "functest" })
+	public void buffer() {
+		ConceptTrie trie = trie();
+		char[] buffer = "xwurzelundknollx".toCharArray();
+		int state = trie.step(ConceptTrie.ROOT, buffer, 1, 6);
+		state = trie.step(state, buffer, 7, 3);
+		Assert.assertFalse(trie.isFinal(state));
+		state = trie.step(state, buffer, 10, 5);
+		Assert.assertArrayEquals(new int[] { 4 }, trie.getConcepts(state));
+		Assert.assertEquals(ConceptTrie.NONE, trie.step(ConceptTrie.ROOT, buffer, 0, 7));
+	}
+
+	@Test(groups = { "functest" })
+	public void empty() {
+		ConceptTrie trie = new ConceptTrie.Builder().build();
+		Assert.assertEquals(1, trie.size());
+		Assert.assertFalse(trie.hasArcs(ConceptTrie.ROOT));
+		Assert.assertEquals(ConceptTrie.NONE, trie.step(ConceptTrie.ROOT, "gewurz"));
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.nbi.ontology.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+
+import org.testng.annotations.Test;
+
+import de.csw.xwiki.plugin.EnhancementBudget;
+
+/**
+ * Tests the overrun handling of the {@link EnhancementBudget}.
+ */
+public class EnhancementBudgetTest {
+
+	/**
+	 * Test, if a page over the budget is enhanced once in the background,
+	 * however many views exceed the budget meanwhile.
+	 */
+	@Test(groups = { "functest" })
+	public void overrun() throws InterruptedException {
+		EnhancementBudget budget = new EnhancementBudget(100, 1);
+		try {
+			final CountDownLatch release = new CountDownLatch(1);
+			final CountDownLatch done = new CountDownLatch(1);
+			final AtomicInteger runs = new AtomicInteger();
+			Runnable completion = new Runnable() {
+				public void run() {
+					runs.incrementAndGet();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					done.countDown();
+				}
+			};
+			budget.overrun("Main.Slow 1.1", "Main.Slow", completion);
+			budget.overrun("Main.Slow 1.1", "Main.Slow", completion);
+			Assert.assertEquals(1, budget.getRunning());
+			release.countDown();
+			Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+			Assert.assertEquals(1, runs.get());
+			Assert.assertEquals(2, budget.getOverruns());
+			Assert.assertEquals(Long.valueOf(2), budget.getPageOverruns().get("Main.Slow"));
+			budget.resetOverruns();
+			Assert.assertEquals(0, budget.getOverruns());
+			Assert.assertTrue(budget.getPageOverruns().isEmpty());
+		} finally {
+			budget.shutdown();
+		}
+	}
+
+	@Test(groups = { "functest" })
+	public void deadline() {
+		EnhancementBudget budget = new EnhancementBudget(100, 1);
+		long now = System.nanoTime();
+		long deadline = budget.getDeadline();
+		Assert.assertTrue(deadline - now >= TimeUnit.MILLISECONDS.toNanos(100));
+		Assert.assertTrue(deadline - now < TimeUnit.SECONDS.toNanos(10));
+		budget.shutdown();
+	}
+
+	@Test(groups = { "functest" }, expectedExceptions = IllegalArgumentException.class)
+	public void noThreads() {
+		new EnhancementBudget(100, 0);
+	}
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.nbi.ontology.test;
+
+import org.junit.Assert;
+
+import org.testng.annotations.Test;
+
+import de.csw.xwiki.plugin.EnhancementCache;
+
+/**
+ * Tests the keys, invalidation and bound of the {@link EnhancementCache}.
+ */
+public class EnhancementCacheTest {
+
+	@Test(groups = { "functest" })
+	public void keys() {
+		EnhancementCache cache = new EnhancementCache(1000);
+		cache.put("Main.WebHome", "de", "1.1", 1, "a");
+		cache.put("Main.WebHome", null, "1.1", 1, "b");
+
+		Assert.assertEquals("a", cache.get("Main.WebHome", "de", "1.1", 1));
+		Assert.assertEquals("b", cache.get("Main.WebHome", "", "1.1", 1));
+		Assert.assertNull(cache.get("Main.WebHome", "en", "1.1", 1));
+		Assert.assertNull(cache.get("Main.WebHome", "de", "1.2", 1));
+		Assert.assertNull(cache.get("Main.WebHome", "de", "1.1", 2));
+		Assert.assertNull(cache.get("Main.Other", "de", "1.1", 1));
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(4, cache.getMisses());
+	}
+
+	@Test(groups = { "functest" })
+	public void invalidate() {
+		EnhancementCache cache = new EnhancementCache(1000);
+		cache.put("Main.WebHome", "de", "1.1", 1, "aa");
+		cache.put("Main.WebHome", "en", "1.2", 1, "bb");
+		cache.put("Main.Other", "de", "1.1", 1, "cc");
+
+		cache.invalidate("Main.WebHome");
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(2, cache.getChars());
+		Assert.assertNull(cache.get("Main.WebHome", "de", "1.1", 1));
+		Assert.assertEquals("cc", cache.get("Main.Other", "de", "1.1", 1));
+
+		cache.clear();
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.getChars());
+	}
+
+	/**
+	 * Test, if the least recently used pages are dropped once the contents
+	 * exceed the bound, and if a page larger than the cache is not stored.
+	 */
+	@Test(groups = { "functest" })
+	public void boundedByChars() {
+		EnhancementCache cache = new EnhancementCache(10);
+		cache.put("A", "", "1", 1, "1234");
+		cache.put("B", "", "1", 1, "1234");
+		cache.get("A", "", "1", 1);
+		cache.put("C", "", "1", 1, "1234");
+		Assert.assertNull(cache.get("B", "", "1", 1));
+		Assert.assertNotNull(cache.get("A", "", "1", 1));
+		Assert.assertNotNull(cache.get("C", "", "1", 1));
+		Assert.assertEquals(8, cache.getChars());
+
+		// replacing an entry accounts for the old content
+		cache.put("C", "", "1", 1, "12");
+		Assert.assertEquals(6, cache.getChars());
+
+		cache.put("D", "", "1", 1, "12345678901");
+		Assert.assertNull(cache.get("D", "", "1", 1));
+		Assert.assertEquals(2, cache.size());
+
+		EnhancementCache disabled = new EnhancementCache(0);
+		disabled.put("A", "", "1", 1, "1");
+		Assert.assertNull(disabled.get("A", "", "1", 1));
+	}
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.nbi.ontology.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+
+import org.junit.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.csw.xwiki.plugin.EnhancementStore;
+
+/**
+ * Tests the versioning and the directory checks of the
+ * {@link EnhancementStore}.
+ */
+public class EnhancementStoreTest {
+
+	File dir;
+
+	@BeforeMethod
+	public void createDir() throws IOException {
+		dir = Files.createTempDirectory("enhancementstore").toFile();
+	}
+
+	@AfterMethod
+	public void deleteDir() throws IOException {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test(groups = { "functest" })
+	public void versions() throws IOException {
+		EnhancementStore store = new EnhancementStore(new File(dir, "store"));
+		store.save("Main.WebHome", "de", "1.1", 7, "[[Kerbel>>x]]");
+
+		Assert.assertEquals("[[Kerbel>>x]]", store.load("Main.WebHome", "de", "1.1", 7));
+		Assert.assertNull(store.load("Main.WebHome", "de", "1.2", 7));
+		Assert.assertNull(store.load("Main.WebHome", "de", "1.1", 8));
+		Assert.assertNull(store.load("Main.WebHome", "en", "1.1", 7));
+		Assert.assertEquals(1, store.list().size());
+
+		store.remove("Main.WebHome", "de");
+		Assert.assertNull(store.load("Main.WebHome", "de", "1.1", 7));
+		Assert.assertEquals(0, store.list().size());
+	}
+
+	/**
+	 * Test, if the directory is made accessible by its owner only.
+	 */
+	@Test(groups = { "functest" })
+	public void ownerOnly() throws IOException {
+		File storeDir = new File(dir, "store");
+		new EnhancementStore(storeDir);
+		if (!storeDir.toPath().getFileSystem().supportedFileAttributeViews().contains("posix"))
+			return;
+		Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(storeDir.toPath());
+		Assert.assertEquals(PosixFilePermissions.fromString("rwx------"), permissions);
+	}
+
+	/**
+	 * Test, if a directory of another user is refused. Changing the owner
+	 * requires to run as root, the test passes otherwise.
+	 */
+	@Test(groups = { "functest" })
+	public void foreignOwner() throws IOException {
+		File storeDir = new File(dir, "store");
+		storeDir.mkdir();
+		storeDir.setWritable(true, false);
+		UserPrincipal nobody;
+		try {
+			nobody = storeDir.toPath().getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName("nobody");
+			Files.setOwner(storeDir.toPath(), nobody);
+		} catch (IOException e) {
+			return;
+		} catch (UnsupportedOperationException e) {
+			return;
+		}
+		try {
+			new EnhancementStore(storeDir);
+			Assert.fail("accepted a directory of " + nobody);
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.nbi.ontology.test;
+
+import org.junit.Assert;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import de.csw.ontology.OntologyIndex;
+import de.csw.ontology.OntologySnapshot;
+import de.csw.ontology.XWikiTextEnhancer;
+import de.csw.xwiki.plugin.IncrementalEnhancer;
+
+/**
+ * Tests, if the {@link IncrementalEnhancer} enhances only the changed blocks.
+ */
+public class IncrementalEnhancerTest extends TestBase {
+
+	static final String V1 = "Ein Satz mit Kerbel.\n\nEin Satz mit Dill.\n\n= Ingwer =\nUnd Zwiebeln.";
+	static final String V2 = "Ein Satz mit Kerbel.\n\nEin Satz mit Petersilie.\n\n= Ingwer =\nUnd Zwiebeln.";
+
+	/** counts the blocks it enhances */
+	static class CountingEnhancer extends XWikiTextEnhancer {
+		int count;
+
+		@Override
+		public String enhance(String text, OntologySnapshot snapshot, long deadline) {
+			count++;
+			return super.enhance(text, snapshot, deadline);
+		}
+	}
+
+	CountingEnhancer enhancer;
+
+	IncrementalEnhancer incremental;
+
+	OntologySnapshot snapshot;
+
+	@BeforeClass
+	public void loadOntology() {
+		loadDomainOntology();
+		snapshot = OntologyIndex.get().getSnapshot();
+	}
+
+	@Test(groups = { "functest" })
+	public void reuseBlocks() {
+		enhancer = new CountingEnhancer();
+		incremental = new IncrementalEnhancer(enhancer, 100000);
+
+		String first = incremental.enhance("Main.Test", "de", V1, snapshot);
+		Assert.assertEquals(3, enhancer.count);
+		Assert.assertTrue(first.contains("[[Kerbel>>"));
+		Assert.assertTrue(first.contains("[[Dill>>"));
+
+		// only the changed block is enhanced, the result is the same as from scratch
+		String second = incremental.enhance("Main.Test", "de", V2, snapshot);
+		Assert.assertEquals(4, enhancer.count);
+		Assert.assertEquals(new IncrementalEnhancer(new XWikiTextEnhancer(), 1).enhance("x", "", V2, snapshot), second);
+		Assert.assertTrue(second.contains("[[Petersilie>>"));
+
+		// the same blocks of another language are not shared
+		incremental.enhance("Main.Test", "en", V2, snapshot);
+		Assert.assertEquals(7, enhancer.count);
+	}
+
+	@Test(groups = { "functest" })
+	public void invalidate() {
+		enhancer = new CountingEnhancer();
+		incremental = new IncrementalEnhancer(enhancer, 100000);
+
+		incremental.enhance("Main.Test", "de", V1, snapshot);
+		incremental.remove("Main.Test");
+		incremental.enhance("Main.Test", "de", V1, snapshot);
+		Assert.assertEquals(6, enhancer.count);
+
+		incremental.clear();
+		Assert.assertEquals(0, incremental.size());
+		incremental.enhance("Main.Test", "de", V1, snapshot);
+		Assert.assertEquals(9, enhancer.count);
+
+		// blocks of another snapshot are not reused
+		OntologyIndex.get().reload(ClassLoader.getSystemResourceAsStream("gewuerz.owl"));
+		OntologySnapshot reloaded = OntologyIndex.get().getSnapshot();
+		incremental.enhance("Main.Test", "de", V1, reloaded);
+		Assert.assertEquals(12, enhancer.count);
+		incremental.enhance("Main.Test", "de", V1, reloaded);
+		Assert.assertEquals(12, enhancer.count);
+	}
+
+	/**
+	 * Test, if a call past its deadline returns nothing and leaves no
+	 * partial result behind.
+	 */
+	@Test(groups = { "functest" })
+	public void deadline() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 50; i++)
+			sb.append("Ein Satz mit Kerbel und Dill. ");
+		String content = sb.append("\n\n").append(V1).toString();
+
+		enhancer = new CountingEnhancer();
+		incremental = new IncrementalEnhancer(enhancer, 100000);
+		Assert.assertNull(incremental.enhance("Main.Test", "de", content, snapshot, System.nanoTime() - 1));
+		Assert.assertEquals(new XWikiTextEnhancer().enhance(content.substring(0, content.indexOf("\n\n") + 2))
+				+ new IncrementalEnhancer(new XWikiTextEnhancer(), 1).enhance("x", "", V1, snapshot),
+				incremental.enhance("Main.Test", "de", content, snapshot));
+	}
+
+	/**
+	 * Test, if the least recently enhanced documents are dropped once the
+	 * kept blocks exceed the maximum number of chars.
+	 */
+	@Test(groups = { "functest" })
+	public void bounded() {
+		incremental = new IncrementalEnhancer(new XWikiTextEnhancer(), 100000);
+		incremental.enhance("A", "", V1, snapshot);
+		int chars = (int) incremental.getChars();
+		Assert.assertTrue(chars > V1.length() + 10);
+
+		enhancer = new CountingEnhancer();
+		incremental = new IncrementalEnhancer(enhancer, 2 * chars);
+		incremental.enhance("A", "", V1, snapshot);
+		incremental.enhance("B", "", V1, snapshot);
+		incremental.enhance("A", "", V1, snapshot);
+		incremental.enhance("C", "", V1, snapshot);
+		Assert.assertEquals(2, incremental.size());
+		Assert.assertEquals(2 * chars, incremental.getChars());
+		Assert.assertEquals(9, enhancer.count);
+		incremental.enhance("B", "", V1, snapshot);
+		Assert.assertEquals(12, enhancer.count);
+
+		incremental.remove("B");
+		Assert.assertEquals(chars, incremental.getChars());
+		incremental.clear();
+		Assert.assertEquals(0, incremental.getChars());
+	}
+
+	/**
+	 * Test, if a document larger than the whole bound is not kept and drops
+	 * its former blocks.
+	 */
+	@Test(groups = { "functest" })
+	public void oversized() {
+		enhancer = new CountingEnhancer();
+		incremental = new IncrementalEnhancer(enhancer, V1.length() + 10);
+		incremental.enhance("A", "", V1, snapshot);
+		Assert.assertEquals(0, incremental.size());
+		Assert.assertEquals(0, incremental.getChars());
+		incremental.enhance("A", "", V1, snapshot);
+		Assert.assertEquals(6, enhancer.count);
+	}
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.nbi.ontology.test;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.testng.annotations.Test;
+
+import de.csw.linkgenerator.plugin.lucene.IndexFields;
+import de.csw.linkgenerator.plugin.lucene.IndexSearcherManager;
+
+/**
+ * Tests the reference counting and the refresh of the
+ * {@link IndexSearcherManager}.
+ */
+public class IndexSearcherManagerTest {
+
+	/**
+	 * Adds a number of documents to the index in the given directory.
+	 */
+	static Directory addDocuments(Directory dir, int count) throws IOException {
+		IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(Version.LUCENE_40,
+				new StandardAnalyzer(Version.LUCENE_40)));
+		try {
+			for (int i = 0; i < count; i++) {
+				Document doc = new Document();
+				doc.add(new StringField(IndexFields.DOCUMENT_WIKI, "xwiki", Field.Store.YES));
+				writer.addDocument(doc);
+			}
+			writer.commit();
+		} finally {
+			writer.close();
+		}
+		return dir;
+	}
+
+	@Test(groups = { "functest" })
+	public void acquireRelease() throws IOException {
+		IndexSearcherManager manager = new IndexSearcherManager(new Directory[] { addDocuments(new RAMDirectory(), 2) });
+
+		IndexSearcher s1 = manager.acquire();
+		IndexSearcher s2 = manager.acquire();
+		// one generation shares one searcher
+		Assert.assertSame(s1, s2);
+		Assert.assertEquals(3, s1.getIndexReader().getRefCount());
+		manager.release(s1);
+		manager.release(s2);
+		Assert.assertEquals(1, s1.getIndexReader().getRefCount());
+		manager.release(null);
+
+		manager.close();
+		Assert.assertEquals(0, s1.getIndexReader().getRefCount());
+	}
+
+	@Test(groups = { "functest" })
+	public void refresh() throws IOException {
+		Directory dir = addDocuments(new RAMDirectory(), 2);
+		IndexSearcherManager manager = new IndexSearcherManager(new Directory[] { dir });
+
+		Assert.assertFalse(manager.maybeRefresh());
+		Assert.assertEquals(0, manager.getGeneration());
+
+		IndexSearcher old = manager.acquire();
+		addDocuments(dir, 1);
+		Assert.assertTrue(manager.maybeRefresh());
+		Assert.assertEquals(1, manager.getGeneration());
+
+		IndexSearcher current = manager.acquire();
+		Assert.assertNotSame(old, current);
+		Assert.assertEquals(3, current.getIndexReader().numDocs());
+
+		// the replaced reader stays open until its last search is done
+		IndexReader oldReader = old.getIndexReader();
+		Assert.assertEquals(1, oldReader.getRefCount());
+		Assert.assertEquals(2, oldReader.numDocs());
+		manager.release(old);
+		Assert.assertEquals(0, oldReader.getRefCount());
+
+		manager.release(current);
+		manager.close();
+	}
+
+	@Test(groups = { "functest" })
+	public void severalDirectories() throws IOException {
+		Directory unchanged = addDocuments(new RAMDirectory(), 2);
+		Directory changed = addDocuments(new RAMDirectory(), 3);
+		IndexSearcherManager manager = new IndexSearcherManager(new Directory[] { unchanged, changed });
+
+		IndexSearcher searcher = manager.acquire();
+		Assert.assertEquals(5, searcher.getIndexReader().numDocs());
+		manager.release(searcher);
+
+		addDocuments(changed, 1);
+		Assert.assertTrue(manager.maybeRefresh());
+		searcher = manager.acquire();
+		Assert.assertEquals(6, searcher.getIndexReader().numDocs());
+		manager.release(searcher);
+		manager.close();
+	}
+
+	@Test(groups = { "functest" })
+	public void close() throws IOException {
+		IndexSearcherManager manager = new IndexSearcherManager(new Directory[] { addDocuments(new RAMDirectory(), 1) });
+		IndexSearcher searcher = manager.acquire();
+		manager.close();
+		manager.close();
+
+		// a running search finishes on the closed manager
+		Assert.assertEquals(1, searcher.getIndexReader().numDocs());
+		manager.release(searcher);
+		Assert.assertEquals(0, searcher.getIndexReader().getRefCount());
+
+		try {
+			manager.acquire();
+			Assert.fail("acquired a searcher of a closed manager");
+		} catch (AlreadyClosedException e) {
+			// expected
+		}
+		try {
+			manager.maybeRefresh();
+			Assert.fail("refreshed a closed manager");
+		} catch (AlreadyClosedException e) {
+			// expected
+		}
+	}
+}
@@ -25,6 +25,7 @@
  ******************************************************************************/
 package de.nbi.ontology.test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
@@ -45,6 +46,7 @@ import org.apache.log4j.Logger;
 import org.testng.annotations.Test;
 
 import com.hp.hpl.jena.ontology.OntClass;
+import com.hp.hpl.jena.ontology.OntModel;
 
 import de.csw.ontology.OntologyIndex;
 
@@ -113,4 +115,37 @@ public class OntologyIndexTest extends TestBase {
 			Assert.assertTrue(index.isPrefix(Arrays.asList(StringUtils.split(p))));
 		}
 	}
+
+	/**
+	 * Test, if anonymous subclasses are children of a concept, as they are in
+	 * the model, while only named classes get concept ids.
+	 */
+	@Test(groups = {"functest"})
+	public void anonymousChildren() throws IOException {
+		String ns = "http://example.org/test#";
+		String owl = "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\""
+				+ " xmlns:rdfs=\"http://www.w3.org/2000/01/rdf-schema#\""
+				+ " xmlns:owl=\"http://www.w3.org/2002/07/owl#\">"
+				+ "<owl:Class rdf:about=\"" + ns + "Recht\"/>"
+				+ "<owl:Class rdf:about=\"" + ns + "Strafrecht\">"
+				+ "<rdfs:subClassOf rdf:resource=\"" + ns + "Recht\"/></owl:Class>"
+				+ "<owl:Class><rdfs:subClassOf rdf:resource=\"" + ns + "Recht\"/></owl:Class>"
+				+ "</rdf:RDF>";
+
+		index.reset();
+		index.load(new ByteArrayInputStream(owl.getBytes("UTF-8")));
+
+		OntModel model = index.getSnapshot().getModel();
+		OntClass recht = model.getOntClass(ns + "Recht");
+		List<OntClass> children = index.getChildren(recht);
+		Assert.assertEquals(2, children.size());
+		Assert.assertTrue(children.contains(model.getOntClass(ns + "Strafrecht")));
+		int anonymous = 0;
+		for (OntClass c : children) {
+			if (c.isAnon())
+				anonymous++;
+		}
+		Assert.assertEquals(1, anonymous);
+		Assert.assertEquals(2, index.getSnapshot().getConceptCount());
+	}
 }
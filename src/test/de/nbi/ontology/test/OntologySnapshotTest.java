@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.nbi.ontology.test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.hp.hpl.jena.ontology.OntClass;
+
+import de.csw.ontology.OntologyIndex;
+import de.csw.ontology.OntologySnapshot;
+import de.csw.util.Config;
+
+/**
+ * Tests the compiled {@link OntologySnapshot} of the domain ontology.
+ */
+public class OntologySnapshotTest extends TestBase {
+
+	OntologyIndex index = OntologyIndex.get();
+
+	@BeforeClass
+	public void loadOntology() {
+		loadDomainOntology();
+	}
+
+	/**
+	 * Replaces the ontology by the domain ontology.
+	 * 
+	 * @return the new snapshot
+	 */
+	OntologySnapshot reload() {
+		InputStream is = ClassLoader.getSystemResourceAsStream(Config.getAppProperty(Config.ONTOLOGY_FILE));
+		index.reload(is);
+		return index.getSnapshot();
+	}
+
+	/**
+	 * Test, if the fingerprint stays the same for the same ontology and
+	 * settings, and changes with the settings of the rendered links.
+	 */
+	@Test(groups = { "functest" })
+	public void fingerprint() {
+		OntologySnapshot first = reload();
+		OntologySnapshot second = reload();
+		Assert.assertTrue(second.getVersion() > first.getVersion());
+		Assert.assertEquals(first.getFingerprint(), second.getFingerprint());
+
+		String url = Config.getAppProperty(Config.LUCENE_URL);
+		String maxTerms = Config.getAppProperty(Config.LUCENE_MAXSEARCHTERMS);
+		try {
+			Config.getAppProperties().setProperty(Config.LUCENE_URL, url + "2");
+			Assert.assertTrue(first.getFingerprint() != reload().getFingerprint());
+			Config.getAppProperties().setProperty(Config.LUCENE_URL, url);
+			Config.getAppProperties().setProperty(Config.LUCENE_MAXSEARCHTERMS, maxTerms + "1");
+			Assert.assertTrue(first.getFingerprint() != reload().getFingerprint());
+		} finally {
+			Config.getAppProperties().setProperty(Config.LUCENE_URL, url);
+			Config.getAppProperties().setProperty(Config.LUCENE_MAXSEARCHTERMS, maxTerms);
+			reload();
+		}
+	}
+
+	/**
+	 * Test, if a snapshot stays usable after a newer one has been published.
+	 */
+	@Test(groups = { "functest" })
+	public void versions() {
+		OntologySnapshot old = index.getSnapshot();
+		int[] exact = old.getExactConcepts("Kerbel");
+		Assert.assertTrue(exact.length > 0);
+
+		OntologySnapshot current = reload();
+		Assert.assertNotSame(old, current);
+		Assert.assertSame(current, index.getSnapshot());
+		Assert.assertTrue(current.getVersion() > old.getVersion());
+		Assert.assertArrayEquals(exact, old.getExactConcepts("Kerbel"));
+		Assert.assertEquals(old.getConceptCount(), current.getConceptCount());
+	}
+
+	/**
+	 * Test, if the similar concepts are the exact matches, synonyms, children
+	 * and parents in that order, without duplicates, and if a limit keeps
+	 * the first of them.
+	 */
+	@Test(groups = { "functest" })
+	public void similarConcepts() {
+		OntologySnapshot snapshot = index.getSnapshot();
+		boolean neighbours = false;
+		for (String term : new String[] { "Gewürze", "Kerbel", "Ingwer", "Wurzeln und Knollen" }) {
+			int[] exact = snapshot.getExactConcepts(term);
+			Assert.assertTrue(term, exact.length > 0);
+
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int id : exact)
+				addNew(expected, id);
+			List<OntClass> classes = snapshot.getExactMatches(term);
+			for (OntClass c : classes)
+				addNew(expected, snapshot.getSynonyms(c), snapshot);
+			for (OntClass c : classes)
+				addNew(expected, snapshot.getChildren(c), snapshot);
+			for (OntClass c : classes)
+				addNew(expected, snapshot.getParents(c), snapshot);
+
+			int[] all = snapshot.getSimilarConcepts(term, Integer.MAX_VALUE);
+			Assert.assertEquals(term, expected.toString(), toList(all).toString());
+			neighbours |= all.length > exact.length;
+
+			for (int limit = 0; limit <= all.length + 1; limit++) {
+				Assert.assertArrayEquals(term, Arrays.copyOf(all, Math.min(limit, all.length)),
+						snapshot.getSimilarConcepts(term, limit));
+			}
+		}
+		Assert.assertTrue(neighbours);
+		Assert.assertEquals(0, snapshot.getSimilarConcepts("Quark", 10).length);
+	}
+
+	private static void addNew(List<Integer> ids, int id) {
+		if (!ids.contains(Integer.valueOf(id)))
+			ids.add(Integer.valueOf(id));
+	}
+
+	/**
+	 * Adds the ids of the named classes, anonymous classes have no id.
+	 */
+	private static void addNew(List<Integer> ids, List<OntClass> classes, OntologySnapshot snapshot) {
+		for (OntClass c : classes) {
+			if (!c.isAnon())
+				addNew(ids, snapshot.getConceptId(c.getURI()));
+		}
+	}
+
+	private static List<Integer> toList(int[] ids) {
+		List<Integer> result = new ArrayList<Integer>(ids.length);
+		for (int id : ids)
+			result.add(Integer.valueOf(id));
+		return result;
+	}
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.nbi.ontology.test;
+
+import org.junit.Assert;
+
+import org.apache.lucene.analysis.de.CachingStemmer;
+import org.apache.lucene.analysis.de.GermanStemmer;
+import org.apache.lucene.analysis.de.Stemmer;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the stemmers of the analysis chain.
+ */
+public class StemmerTest {
+
+	static final String[] WORDS = { "Gewürze", "Gewürzen", "pflanzliches", "pflanzlichen", "Zwiebeln",
+			"Küchengewürz", "Petersilie", "Wurzeln", "und", "Knollen", "schnellstens", "Häuser", "Strafrechts",
+			"Blattpetersilie", "Meerrettich", "Lauchzwiebel", "ss", "a", "" };
+
+	/**
+	 * Stems the word in a buffer of the size the Stemmer interface asks for.
+	 */
+	static String stem(Stemmer stemmer, String word) {
+		char[] buffer = new char[2 * word.length()];
+		word.getChars(0, word.length(), buffer, 0);
+		return new String(buffer, 0, stemmer.stem(buffer, word.length()));
+	}
+
+	/**
+	 * Stems as computed by the String based implementation the char[] one
+	 * replaced.
+	 */
+	static final String[][] STEMS = {
+			{ "gew\u00fcrze", "gewurx" },
+			{ "gew\u00fcrzen", "gewurx" },
+			{ "pflanzliches", "pflanzlich" },
+			{ "h\u00e4user", "hau" },
+			{ "zwiebeln", "zwiebel" },
+			{ "schlie\u00dfen", "schliess" },
+			{ "strasse", "strass" },
+			{ "stra\u00dfe", "strass" },
+			{ "meerrettich", "meerrettich" },
+			{ "wurzeln", "wurzel" },
+			{ "knollen", "knoll" },
+			{ "schnellstens", "schnellst" },
+			{ "abschlie\u00dfend", "abschliess" },
+			{ "petersilien", "petersilie" },
+			{ "k\u00fcchengew\u00fcrz", "kuchengewurx" },
+			{ "ss", "ss" },
+			{ "b\u00e4ume", "baum" },
+			{ "aussichten", "aussich" },
+			{ "kerbels", "kerbel" },
+			{ "mittagessen", "mittagess" },
+			{ "pflanzliches gew\u00fcrz", "pflanzlich gewurx" },
+			{ "b\u00e4ckereien", "backerei" },
+			{ "geschehen", "gescheh" },
+			{ "nnn", "nnn" },
+			{ "2013", "2013" },
+			{ "x", "x" },
+	};
+
+	/**
+	 * Test, if both stem methods return the stems of the previous
+	 * implementation. The char[] method stems single words only.
+	 */
+	@Test(groups = { "functest" })
+	public void stems() {
+		GermanStemmer stemmer = new GermanStemmer();
+		for (String[] t : STEMS) {
+			Assert.assertEquals(t[0], t[1], stemmer.stem(t[0]));
+			if (t[0].indexOf(' ') < 0)
+				Assert.assertEquals(t[0], t[1], stem(stemmer, t[0]));
+		}
+	}
+
+	/**
+	 * Test, if the cache returns the stems of the wrapped stemmer, also when
+	 * words evict each other from a tiny cache.
+	 */
+	@Test(groups = { "functest" })
+	public void cachedStems() {
+		GermanStemmer plain = new GermanStemmer();
+		for (int size : new int[] { 1, 2, 1024 }) {
+			CachingStemmer cached = new CachingStemmer(new GermanStemmer(), size);
+			for (int round = 0; round < 3; round++) {
+				for (String word : WORDS) {
+					Assert.assertEquals(word, plain.stem(word), cached.stem(word));
+					Assert.assertEquals(word, plain.stem(word), stem(cached, word));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test, if hits and misses are counted; the counts are exact within a
+	 * single thread.
+	 */
+	@Test(groups = { "functest" })
+	public void counters() {
+		CachingStemmer cached = new CachingStemmer(new GermanStemmer(), 1024);
+		cached.stem("Gewürze");
+		stem(cached, "Gewürze");
+		cached.stem("Kerbel");
+		Assert.assertEquals(1, cached.getHits());
+		Assert.assertEquals(2, cached.getMisses());
+	}
+
+	@Test(groups = { "functest" })
+	public void cacheSize() {
+		Assert.assertEquals(1024, new CachingStemmer(new GermanStemmer(), 1000).getSize());
+		Assert.assertEquals(1024, new CachingStemmer(new GermanStemmer(), 1024).getSize());
+	}
+}
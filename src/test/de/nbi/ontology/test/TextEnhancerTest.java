@@ -30,6 +30,8 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 
@@ -83,4 +85,73 @@ public class TextEnhancerTest extends TestBase {
 
 		Assert.assertTrue(FileUtils.contentEquals(outFile, resFile));
 	}
+
+	/**
+	 * Test, if texts enhanced in sections in parallel are enhanced the same.
+	 * 
+	 * @param inFile
+	 *            a text
+	 * @throws IOException
+	 */
+	@Test(dataProviderClass = TestFileProvider.class, dataProvider = "enhanceTestFiles",
+			groups = { "functest" })
+	public void parallelSections(File inFile) throws IOException {
+		String basename = FilenameUtils.removeExtension(inFile.getAbsolutePath());
+		File resFile = new File(basename + ".res");
+
+		ExecutorService executor = XWikiTextEnhancer.createSectionExecutor(2);
+		try {
+			XWikiTextEnhancer enhancer = new XWikiTextEnhancer(executor, 1, 2);
+			String text = FileUtils.readFileToString(inFile);
+			Assert.assertEquals(FileUtils.readFileToString(resFile), enhancer.enhance(text));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Test, if the sections are enhanced in the calling thread once the
+	 * executor has been shut down.
+	 * 
+	 * @param inFile
+	 *            a text
+	 * @throws IOException
+	 */
+	@Test(dataProviderClass = TestFileProvider.class, dataProvider = "enhanceTestFiles",
+			groups = { "functest" })
+	public void rejectedSections(File inFile) throws IOException {
+		String basename = FilenameUtils.removeExtension(inFile.getAbsolutePath());
+		File resFile = new File(basename + ".res");
+
+		ExecutorService executor = XWikiTextEnhancer.createSectionExecutor(2);
+		executor.shutdown();
+		XWikiTextEnhancer enhancer = new XWikiTextEnhancer(executor, 1, 2);
+		String text = FileUtils.readFileToString(inFile);
+		Assert.assertEquals(FileUtils.readFileToString(resFile), enhancer.enhance(text));
+	}
+
+	/**
+	 * Test, if the enhancement is given up once its deadline has passed.
+	 */
+	@Test(groups = { "functest" })
+	public void deadline() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100; i++)
+			sb.append("Kerbel und Dill.\n\n");
+		String text = sb.toString();
+		XWikiTextEnhancer enhancer = new XWikiTextEnhancer();
+
+		Assert.assertNull(enhancer.enhance(text, index.getSnapshot(), System.nanoTime() - 1));
+		Assert.assertEquals(enhancer.enhance(text),
+				enhancer.enhance(text, index.getSnapshot(), System.nanoTime() + TimeUnit.SECONDS.toNanos(60)));
+
+		ExecutorService executor = XWikiTextEnhancer.createSectionExecutor(2);
+		try {
+			XWikiTextEnhancer parallel = new XWikiTextEnhancer(executor, 1, 2);
+			Assert.assertNull(parallel.enhance(text, index.getSnapshot(), System.nanoTime() - 1));
+			Assert.assertEquals(enhancer.enhance(text), parallel.enhance(text));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 }
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * This file is part of the Coporate Semantic Web Project.
+ * 
+ * This work has been partially supported by the ``InnoProfile-Corporate Semantic Web" project funded by the German Federal
+ * Ministry of Education and Research (BMBF) and the BMBF Innovation Initiative for the New German Laender - Entrepreneurial Regions.
+ * 
+ * http://www.corporate-semantic-web.de/
+ * 
+ * Freie Universitaet Berlin
+ * Copyright (c) 2007-2013
+ * 
+ * Institut fuer Informatik
+ * Working Group Coporate Semantic Web
+ * Koenigin-Luise-Strasse 24-26
+ * 14195 Berlin
+ * 
+ * http://www.mi.fu-berlin.de/en/inf/groups/ag-csw/
+ * 
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA or see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package de.nbi.ontology.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Assert;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.testng.annotations.Test;
+
+import de.csw.lucene.WikiTokenizer;
+
+/**
+ * Tests, if the {@link WikiTokenizer} skips links and macros.
+ */
+public class WikiTokenizerTest {
+
+	/**
+	 * @return the tokens of the text as <code>term@start</code>, separated by
+	 *         blanks; a token after a skipped region is prefixed with '|'
+	 */
+	static String tokenize(String text) throws IOException {
+		WikiTokenizer t = new WikiTokenizer(new StringReader(text));
+		CharTermAttribute term = t.addAttribute(CharTermAttribute.class);
+		OffsetAttribute offset = t.addAttribute(OffsetAttribute.class);
+		PositionIncrementAttribute posInc = t.addAttribute(PositionIncrementAttribute.class);
+		StringBuilder sb = new StringBuilder();
+		t.reset();
+		while (t.incrementToken()) {
+			if (sb.length() > 0)
+				sb.append(' ');
+			if (posInc.getPositionIncrement() == WikiTokenizer.REGION_POSITION_GAP)
+				sb.append('|');
+			else
+				Assert.assertEquals(1, posInc.getPositionIncrement());
+			sb.append(term).append('@').append(offset.startOffset());
+			Assert.assertEquals(term.toString(), text.substring(offset.startOffset(), offset.endOffset()));
+		}
+		t.end();
+		t.close();
+		return sb.toString();
+	}
+
+	@Test(groups = { "functest" })
+	public void words() throws IOException {
+		Assert.assertEquals("Ein@0 Satz@4 2013@10", tokenize("Ein Satz, 2013."));
+		Assert.assertEquals("", tokenize(""));
+		Assert.assertEquals("", tokenize("== ** =="));
+	}
+
+	@Test(groups = { "functest" })
+	public void skipRegions() throws IOException {
+		Assert.assertEquals("a@0 |b@19", tokenize("a [[Link>>Main.X]] b"));
+		Assert.assertEquals("a@0 |b@32", tokenize("a {{velocity}}$x y{{/velocity}} b"));
+		Assert.assertEquals("a@0 |b@28", tokenize("a {{html}}<p>x</p>{{/html}} b"));
+		Assert.assertEquals("a@0 |b@40", tokenize("a <csw:linkset x=\"1\">Link</csw:linkset> b"));
+		// other macros are tokenized
+		Assert.assertEquals("a@0 info@4 x@10 info@14 b@21", tokenize("a {{info}}x{{/info}} b"));
+		// an unclosed region extends to the end
+		Assert.assertEquals("a@0", tokenize("a [[Link b"));
+		Assert.assertEquals("a@0", tokenize("a {{groovy}} b"));
+		// consecutive regions give one gap
+		Assert.assertEquals("|a@11", tokenize("[[x]][[y]] a"));
+	}
+
+	/**
+	 * Test, if regions are skipped when they cross the read buffer of the
+	 * tokenizer.
+	 */
+	@Test(groups = { "functest" })
+	public void longText() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 4090; i++)
+			sb.append(' ');
+		sb.append("[[x>>");
+		for (int i = 0; i < 5000; i++)
+			sb.append('y');
+		sb.append("]] z");
+		Assert.assertEquals("|z@" + (sb.length() - 1), tokenize(sb.toString()));
+	}
+
+	@Test(groups = { "functest" })
+	public void nextBlock() {
+		String text = "a\nb\n\n\n= H =\nc [[x\n\ny]] d\n \ne";
+		int first = WikiTokenizer.nextBlock(text, 0);
+		Assert.assertEquals("a\nb\n\n\n", text.substring(0, first));
+		int second = WikiTokenizer.nextBlock(text, first);
+		Assert.assertEquals("= H =\nc [[x\n\ny]] d\n \n", text.substring(first, second));
+		Assert.assertEquals(text.length(), WikiTokenizer.nextBlock(text, second));
+	}
+}